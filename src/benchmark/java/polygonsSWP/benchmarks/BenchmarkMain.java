@@ -0,0 +1,86 @@
+package polygonsSWP.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import polygonsSWP.PolygonsMain;
+
+
+/**
+ * Runs GeneratorBenchmark for every algorithm and the given numbers of
+ * points (default: 10, 100, 1000), leaving out the numbers an algorithm does
+ * not finish in reasonable time. Reports the average time per polygon and,
+ * using the GC profiler, the allocated bytes per polygon (gc.alloc.rate.norm).
+ * The results of each algorithm are also written to benchmarks-<ID>.csv.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class BenchmarkMain
+{
+  private static final int[] DEFAULT_POINTS = { 10, 100, 1000 };
+
+  /**
+   * Largest number of points benchmarked per algorithm ID. Permute & Reject,
+   * Enumerating Permute & Reject and Incremental Construction & Backtracking
+   * are exponential, RandomPolygonAlgorithm takes minutes for 1000 points.
+   */
+  private static final int[] MAX_POINTS = {
+      1000, // SpacePartitioning
+      10, // Permute & Reject
+      1000, // 2-Opt moves
+      100, // RandomPolygonAlgorithm
+      10, // Incremental Construction & Backtracking
+      1000, // ConvexHull
+      1000, // Velocity Virmani
+      1000, // SteadyGrowth
+      1000, // TwoPeasants
+      10 // Enumerating Permute & Reject
+  };
+
+  public static void main(String[] args)
+    throws RunnerException {
+    int[] points = DEFAULT_POINTS;
+    if (args.length > 0) {
+      points = new int[args.length];
+      for (int i = 0; i < args.length; i++)
+        points[i] = Integer.parseInt(args[i]);
+    }
+
+    int algorithms = PolygonsMain.getFactories().length;
+    if (algorithms != MAX_POINTS.length)
+      throw new RuntimeException("BenchmarkMain/main: MAX_POINTS has " +
+          MAX_POINTS.length + " entries, but there are " + algorithms +
+          " algorithms");
+
+    for (int algorithm = 0; algorithm < algorithms; algorithm++) {
+      List<String> ns = new ArrayList<String>();
+      for (int n : points)
+        if (n <= MAX_POINTS[algorithm]) ns.add(Integer.toString(n));
+      if (ns.isEmpty()) continue;
+
+      Options opts = new OptionsBuilder()
+          .include(GeneratorBenchmark.class.getName())
+          .param("algorithm", Integer.toString(algorithm))
+          .param("n", ns.toArray(new String[ns.size()]))
+          .addProfiler(GCProfiler.class)
+          .resultFormat(ResultFormatType.CSV)
+          .result("benchmarks-" + algorithm + ".csv")
+          .build();
+
+      new Runner(opts).run();
+    }
+  }
+}
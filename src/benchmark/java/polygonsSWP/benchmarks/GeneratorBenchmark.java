@@ -0,0 +1,110 @@
+package polygonsSWP.benchmarks;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import polygonsSWP.PolygonsMain;
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGenerator;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.geometry.Polygon;
+import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
+
+
+/**
+ * Measures creating and running a PolygonGenerator of one algorithm (ID as
+ * in PolygonsMain, see --algorithm) for n points. The point set is created
+ * once per trial; each invocation passes a copy of it to createInstance()
+ * and reseeds the random generator, so every invocation creates the same
+ * polygon. Time and allocations therefore include createInstance() and the
+ * copy, which are small compared to generate(). Algorithms which do not
+ * accept user supplied points create their own set of n points instead.
+ *
+ * Not every algorithm terminates in reasonable time for every n, use
+ * BenchmarkMain to run only the feasible combinations.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GeneratorBenchmark
+{
+  public static final long SEED = 1322691L;
+
+  /* Same defaults as the command line. */
+  public static final int SIZE = 1000;
+  public static final int RUNS = 100;
+  public static final int RADIUS = 400;
+  public static final int VELOCITY = 20;
+
+  @Param({ "0", "1", "2", "3", "4", "5", "6", "7", "8", "9" })
+  public int algorithm;
+
+  @Param({ "10", "100", "1000" })
+  public int n;
+
+  private PolygonGeneratorFactory factory;
+  private List<Point> points;
+
+  @Setup(Level.Trial)
+  public void setUp() {
+    factory = PolygonsMain.getFactories()[algorithm];
+
+    if (factory.acceptsUserSuppliedPoints()) {
+      Random.pseudoRandom(true, SEED);
+      points = GeneratorUtils.createRandomSetOfPointsInSquare(n, SIZE, true);
+    }
+  }
+
+  @Benchmark
+  public Polygon generate()
+    throws IllegalParameterizationException {
+    Random.pseudoRandom(true, SEED);
+
+    Map<Parameters, Object> params = new HashMap<Parameters, Object>();
+    if (points != null) {
+      params.put(Parameters.points, new ArrayList<Point>(points));
+    }
+    else {
+      params.put(Parameters.n, n);
+      params.put(Parameters.size, SIZE);
+    }
+    params.put(Parameters.runs, RUNS);
+    params.put(Parameters.radius, RADIUS);
+    params.put(Parameters.velocity, VELOCITY);
+
+    PolygonGenerator generator =
+        factory.createInstance(params, new PolygonStatistics(), null);
+    return generator.generate();
+  }
+}
@@ -0,0 +1,101 @@
+package polygonsSWP.benchmarks;
+
+import java.util.Random;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import polygonsSWP.util.RandomNumbers;
+
+
+/**
+ * Compares RandomNumbers with java.util.Random and SplittableRandom, for
+ * single values and filling an array as done when creating point sets.
+ * Every benchmark thread has its own generators, run with -t to see the
+ * effect of more threads:
+ *
+ * $ java -cp target/benchmarks.jar org.openjdk.jmh.Main RandomBenchmark -t 4
+ *
+ * The shared* benchmarks use one java.util.Random for all threads, like
+ * polygonsSWP.util.Random.create() used to do with a fixed seed.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RandomBenchmark
+{
+  private static final int SIZE = 2 * 1000;
+  private static final Random shared = new Random(1322691L);
+
+  private final Random random = new Random(1322691L);
+  private final SplittableRandom splittable = new SplittableRandom(1322691L);
+  private final RandomNumbers numbers = new RandomNumbers(1322691L);
+  private final double[] values = new double[SIZE];
+
+  @Benchmark
+  public double randomNextDouble() {
+    return random.nextDouble();
+  }
+
+  @Benchmark
+  public double sharedRandomNextDouble() {
+    return shared.nextDouble();
+  }
+
+  @Benchmark
+  public double splittableNextDouble() {
+    return splittable.nextDouble();
+  }
+
+  @Benchmark
+  public double randomNumbersNextDouble() {
+    return numbers.nextDouble();
+  }
+
+  @Benchmark
+  public double[] randomFill() {
+    for (int i = 0; i < SIZE; i++)
+      values[i] = random.nextDouble();
+    return values;
+  }
+
+  @Benchmark
+  public double[] sharedRandomFill() {
+    for (int i = 0; i < SIZE; i++)
+      values[i] = shared.nextDouble();
+    return values;
+  }
+
+  @Benchmark
+  public double[] splittableFill() {
+    for (int i = 0; i < SIZE; i++)
+      values[i] = splittable.nextDouble();
+    return values;
+  }
+
+  @Benchmark
+  public double[] randomNumbersFill() {
+    numbers.nextDoubles(values);
+    return values;
+  }
+}
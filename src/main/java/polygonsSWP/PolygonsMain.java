@@ -57,6 +57,13 @@ public class PolygonsMain
       new SteadyGrowthFactory(), new TwoPeasantsGeneratorFactory(),
       new EnumeratingPermuteAndRejectFactory() };
 
+  /**
+   * @return the available generators, indexed by their algorithm ID.
+   */
+  public static PolygonGeneratorFactory[] getFactories() {
+    return factories.clone();
+  }
+
   public static void main(String[] args) throws Exception {
     // Process command line.
     CommandLineParser clp = new CommandLineParser();
@@ -104,17 +111,28 @@ public class PolygonsMain
     boolean header = !clp.getNoHeader();
     boolean statistics = !clp.getNoStatistics();
     int number = clp.getNumber();
+    if (clp.hasSeed()) Random.pseudoRandom(true, clp.getSeed());
     int threads = clp.getThreads();
+    int creatorThreads = clp.getCreatorThreads();
+    int statisticsThreads = clp.getStatisticsThreads();
+    int writerThreads = clp.getWriterThreads();
+    int racers = clp.getRacers();
     String database = clp.getDatabase();
     PolygonGeneratorFactory factory = factories[clp.getAlgorithm()];
     
     PolygonLog log = null;
     if(database != null) {
-      log = new DatabaseLog(database);
+      log = new DatabaseLog(database, clp.getBatchSize(),
+          clp.getMaxBatchAge());
     } else {
       String output = clp.getOutputPath();
-      OutputStream os = (output != null) ? new FileOutputStream(new File(output)) : System.out;
-      log = new CsvLog(os, header, statistics);
+      if (output != null && clp.getSharded()) {
+        log = new CsvLog(new File(output), header, statistics, racers > 1,
+            clp.hasSeed());
+      } else {
+        OutputStream os = (output != null) ? new FileOutputStream(new File(output)) : System.out;
+        log = new CsvLog(os, header, statistics, racers > 1, clp.hasSeed());
+      }
     }
 
     // Construct parameter map.
@@ -125,16 +143,58 @@ public class PolygonsMain
       params.put(Parameters.runs, clp.getRuns());
       params.put(Parameters.radius, clp.getRadius());
       params.put(Parameters.velocity, clp.getVelocity());
+      if (clp.hasMoveThreads())
+        params.put(Parameters.threads, clp.getMoveThreads());
     }
     else {
-      if (clp.hasRuns() || clp.hasRadius() || clp.hasVelocity()) {
-        System.err.println("Use --runs, --velocity, and --radius for Virmani's velocity algorithm.");
+      if (clp.hasRuns() || clp.hasRadius() || clp.hasVelocity() ||
+          clp.hasMoveThreads()) {
+        System.err.println("Use --runs, --velocity, --radius, and --move-threads for Virmani's velocity algorithm.");
         clp.help();
         return;
       }
     }
+    if (factory instanceof EnumeratingPermuteAndRejectFactory) {
+      if (clp.hasSearchThreads())
+        params.put(Parameters.threads, clp.getSearchThreads());
+
+      if (clp.hasCheckpoint() || clp.hasResume()) {
+        if (clp.hasCheckpoint() && clp.hasResume()) {
+          System.err.println("Use either --checkpoint or --resume.");
+          clp.help();
+          return;
+        }
+        if (number != 1 || racers != 1) {
+          System.err.println("--checkpoint and --resume need --number 1 and no --race.");
+          clp.help();
+          return;
+        }
+        if (clp.hasResume()) {
+          params.put(Parameters.checkpoint, clp.getResume());
+          params.put(Parameters.resume, true);
+        }
+        else {
+          params.put(Parameters.checkpoint, clp.getCheckpoint());
+        }
+      }
+    }
+    else if (clp.hasSearchThreads() || clp.hasCheckpoint() || clp.hasResume()) {
+      System.err.println("Use --search-threads, --checkpoint, and --resume for Enumerating Permute & Reject.");
+      clp.help();
+      return;
+    }
+    if (factory instanceof SpacePartitioningFactory) {
+      if (clp.hasPartitionThreads())
+        params.put(Parameters.threads, clp.getPartitionThreads());
+    }
+    else if (clp.hasPartitionThreads()) {
+      System.err.println("Use --partition-threads for Space Partitioning.");
+      clp.help();
+      return;
+    }
 
-    AlgorithmRunner.run(number, threads, log, factory, params);
+    AlgorithmRunner.run(number, creatorThreads, threads, statisticsThreads,
+        writerThreads, racers, log, factory, params);
     log.close();
   }
 
@@ -148,6 +208,7 @@ public class PolygonsMain
     private final int defaultNumber = 1;
     private final int defaultPoints = 100;
     private final int defaultThreads = 4;
+    private final int defaultStageThreads = 1;
     private final int defaultRuns = 100;
     private final int defaultRadius = 400;
     private final int defaultVelocity = 20;
@@ -199,9 +260,34 @@ public class PolygonsMain
 
       Option threads =
           OptionBuilder.withLongOpt("threads").withArgName("Number of threads").withDescription(
-              "The number of threads to create (Default: " + defaultThreads +
+              "The number of threads generating polygons (Default: " + defaultThreads +
+                  ")").hasArg().isRequired(false).withType(Integer.class).create();
+
+      Option creatorThreads =
+          OptionBuilder.withLongOpt("creator-threads").withArgName("Number of threads").withDescription(
+              "The number of threads creating the point sets (Default: " + defaultStageThreads +
+                  ")").hasArg().isRequired(false).withType(Integer.class).create();
+
+      Option statisticsThreads =
+          OptionBuilder.withLongOpt("statistics-threads").withArgName("Number of threads").withDescription(
+              "The number of threads computing statistics (Default: " + defaultStageThreads +
                   ")").hasArg().isRequired(false).withType(Integer.class).create();
 
+      Option writerThreads =
+          OptionBuilder.withLongOpt("writer-threads").withArgName("Number of threads").withDescription(
+              "The number of threads writing the output (Default: " + defaultStageThreads +
+                  ")").hasArg().isRequired(false).withType(Integer.class).create();
+
+      Option race =
+          OptionBuilder.withLongOpt("race").withArgName("Number of generators").withDescription(
+              "Race this many generators with different seeds on each point set, and take the first polygon. Adds cpu_time_for_creating_polygon and racers to the statistics (Default: 1).").hasArg().withType(
+              Integer.class).isRequired(false).create();
+
+      Option seed =
+          OptionBuilder.withLongOpt("seed").withArgName("Seed").withDescription(
+              "Master seed. Polygons are reproducible for the same seed, regardless of the number of threads. Adds the seed of each polygon to the statistics.").hasArg().isRequired(
+              false).withType(Long.class).create();
+
       Option output =
           OptionBuilder.withLongOpt("output").withArgName("Output path").withDescription(
               "When specified, the generated polygons (and statistics) will be saved in this File.").hasArg().isRequired(
@@ -212,6 +298,18 @@ public class PolygonsMain
               "When specified, the generated polygons (and statistics) will be saved in this Database.").hasArg().isRequired(
               false).withType(String.class).create();
 
+      Option batchSize =
+          OptionBuilder.withLongOpt("batch-size").withArgName("Batch size").withDescription(
+              "Number of rows inserted per transaction (only with --database, Default: " +
+                  DatabaseLog.DEFAULT_BATCH_SIZE + ")").hasArg().isRequired(
+              false).withType(Integer.class).create();
+
+      Option maxBatchAge =
+          OptionBuilder.withLongOpt("max-batch-age").withArgName("Milliseconds").withDescription(
+              "Maximum time in milliseconds a row is buffered before its batch is inserted (only with --database, Default: " +
+                  DatabaseLog.DEFAULT_MAX_BATCH_AGE + ")").hasArg().isRequired(
+              false).withType(Integer.class).create();
+
       Option statistics =
           OptionBuilder.withLongOpt("no-statistics").withArgName(
               "No statistics").withDescription(
@@ -221,6 +319,10 @@ public class PolygonsMain
           OptionBuilder.withLongOpt("no-header").withArgName("No header").withDescription(
               "Do not include a header in the output (only with --output).").isRequired(false).create();
 
+      Option sharded =
+          OptionBuilder.withLongOpt("sharded").withArgName("Sharded output").withDescription(
+              "Write one file per writer thread, named after the output file (only with --output).").isRequired(false).create();
+
       Option runs =
           OptionBuilder.withLongOpt("runs").withArgName("number of runs").withDescription(
               "Number of iterations (Virmani's Velocity algorithm, default: " +
@@ -239,6 +341,31 @@ public class PolygonsMain
                   defaultVelocity + ")").hasArg().withType(Integer.class).isRequired(
               false).create();
 
+      Option moveThreads =
+          OptionBuilder.withLongOpt("move-threads").withArgName("Number of threads").withDescription(
+              "Move the points in batches, checked by this many threads per polygon (Virmani's Velocity algorithm, default: move one by one)").hasArg().withType(
+              Integer.class).isRequired(false).create();
+
+      Option searchThreads =
+          OptionBuilder.withLongOpt("search-threads").withArgName("Number of threads").withDescription(
+              "Search the permutations with this many threads per polygon (Enumerating Permute & Reject, default: 1)").hasArg().withType(
+              Integer.class).isRequired(false).create();
+
+      Option partitionThreads =
+          OptionBuilder.withLongOpt("partition-threads").withArgName("Number of threads").withDescription(
+              "Solve large subproblems with this many threads per polygon (Space Partitioning, default: 1)").hasArg().withType(
+              Integer.class).isRequired(false).create();
+
+      Option checkpoint =
+          OptionBuilder.withLongOpt("checkpoint").withArgName("Checkpoint path").withDescription(
+              "Save the state of the search in this file every minute and when stopped (Enumerating Permute & Reject)").hasArg().withType(
+              String.class).isRequired(false).create();
+
+      Option resume =
+          OptionBuilder.withLongOpt("resume").withArgName("Checkpoint path").withDescription(
+              "Resume the search saved in this file with --checkpoint and keep saving it there (Enumerating Permute & Reject)").hasArg().withType(
+              String.class).isRequired(false).create();
+
       Option boundingbox =
           OptionBuilder.withLongOpt("boundingbox").withArgName("boundingbox").withDescription(
               "Length of the sides of the surrounding bounding square (default: " +
@@ -252,13 +379,26 @@ public class PolygonsMain
       opts.addOption(points);
       opts.addOption(number);
       opts.addOption(threads);
+      opts.addOption(creatorThreads);
+      opts.addOption(statisticsThreads);
+      opts.addOption(writerThreads);
+      opts.addOption(race);
+      opts.addOption(seed);
       opts.addOption(output);
       opts.addOption(database);
+      opts.addOption(batchSize);
+      opts.addOption(maxBatchAge);
       opts.addOption(statistics);
       opts.addOption(header);
+      opts.addOption(sharded);
       opts.addOption(runs);
       opts.addOption(radius);
       opts.addOption(velocity);
+      opts.addOption(moveThreads);
+      opts.addOption(searchThreads);
+      opts.addOption(partitionThreads);
+      opts.addOption(checkpoint);
+      opts.addOption(resume);
       opts.addOption(boundingbox);
 
       GnuParser parser = new GnuParser();
@@ -275,6 +415,14 @@ public class PolygonsMain
       return true;
     }
 
+    public int getBatchSize() {
+      return getIntValue("batch-size", DatabaseLog.DEFAULT_BATCH_SIZE);
+    }
+
+    public long getMaxBatchAge() {
+      return getIntValue("max-batch-age", (int) DatabaseLog.DEFAULT_MAX_BATCH_AGE);
+    }
+
     public String getDatabase() {
       return cl.getOptionValue("database");
     }
@@ -299,6 +447,30 @@ public class PolygonsMain
       return getIntValue("threads", defaultThreads);
     }
 
+    public int getCreatorThreads() {
+      return getIntValue("creator-threads", defaultStageThreads);
+    }
+
+    public int getStatisticsThreads() {
+      return getIntValue("statistics-threads", defaultStageThreads);
+    }
+
+    public int getWriterThreads() {
+      return getIntValue("writer-threads", defaultStageThreads);
+    }
+
+    public int getRacers() {
+      return getIntValue("race", 1);
+    }
+
+    public boolean hasSeed() {
+      return cl.hasOption("seed");
+    }
+
+    public long getSeed() {
+      return Long.parseLong(cl.getOptionValue("seed"));
+    }
+
     public int getNumber() {
       return getIntValue("number", defaultNumber);
     }
@@ -315,6 +487,46 @@ public class PolygonsMain
       return cl.hasOption("velocity");
     }
 
+    public boolean hasMoveThreads() {
+      return cl.hasOption("move-threads");
+    }
+
+    public int getMoveThreads() {
+      return getIntValue("move-threads", 0);
+    }
+
+    public boolean hasSearchThreads() {
+      return cl.hasOption("search-threads");
+    }
+
+    public int getSearchThreads() {
+      return getIntValue("search-threads", 1);
+    }
+
+    public boolean hasPartitionThreads() {
+      return cl.hasOption("partition-threads");
+    }
+
+    public int getPartitionThreads() {
+      return getIntValue("partition-threads", 1);
+    }
+
+    public boolean hasCheckpoint() {
+      return cl.hasOption("checkpoint");
+    }
+
+    public String getCheckpoint() {
+      return cl.getOptionValue("checkpoint");
+    }
+
+    public boolean hasResume() {
+      return cl.hasOption("resume");
+    }
+
+    public String getResume() {
+      return cl.getOptionValue("resume");
+    }
+
     public int getRuns() {
       return getIntValue("runs", defaultRuns);
     }
@@ -336,6 +548,10 @@ public class PolygonsMain
       return false;
     }
 
+    public boolean getSharded() {
+      return cl.hasOption("sharded");
+    }
+
     public boolean getNoHeader() {
       if (cl.hasOption("no-header")) return true;
       return false;
@@ -1,19 +1,59 @@
 package polygonsSWP.analysis;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import polygonsSWP.data.PolygonStatistics;
 import polygonsSWP.generators.IllegalParameterizationException;
 import polygonsSWP.generators.PolygonGenerator;
 import polygonsSWP.generators.PolygonGeneratorFactory;
 import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
+import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
+import polygonsSWP.util.RandomNumbers;
 
 
 /**
+ * Generates polygons in a pipeline of four stages: creating the generators
+ * (and thereby their point sets), generating the polygons, computing the
+ * statistics and writing them out. The stages are connected by bounded
+ * queues, so a stage blocks as soon as the next one cannot keep up. This way
+ * only a few polygons per thread are in memory at any time, no matter how
+ * many runs are requested.
+ *
+ * Each polygon gets its own random generator, seeded by Random.seedFor() with
+ * its run index, which is bound to the thread working on it. The generators
+ * are not thread-safe, but a polygon is only worked on by one thread at a
+ * time. With a fixed master seed the polygons are the same for any number of
+ * threads, only the order of the output differs.
+ *
+ * In racing mode, k generators with different seeds (see Random.seedFor())
+ * work on the same point set at the same time. The first polygon wins, the
+ * other generators are stopped. This pays off for generators whose running
+ * time varies a lot, like Permute & Reject. The statistics are those of the
+ * winner, with the total CPU time of all racers. Only the racers' own
+ * threads are measured: work a generator hands to helper threads (move
+ * batches of Velocity Virmani, search threads of Enumerating Permute &
+ * Reject, partition threads of Space Partitioning) is not included. Which
+ * generator wins depends on timing, so racing polygons are not reproducible.
+ *
  * (c) 2011-2012
  * @author Steve Dierker <dierker.steve@fu-berlin.de>
  * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
@@ -24,22 +64,152 @@ import polygonsSWP.geometry.Polygon;
  */
 public class AlgorithmRunner
 {
+  /**
+   * Capacity of the queue in front of a stage, per thread of that stage.
+   */
+  private static final int QUEUE_SIZE_PER_THREAD = 2;
+
   public static boolean run(int runs, int threads, PolygonLog out, PolygonGeneratorFactory factory, Map<Parameters, Object> params) {
-    
-    ExecutorService es = Executors.newFixedThreadPool(threads);
-    try {
-      
-      for (int i = 0; i < runs; i++) {        
-        es.execute(new PolygonGeneratorWorker(out, factory, params));
-      }
-        
-    
-    } catch (IllegalParameterizationException ipe) {
-      System.err.println("Illegal parameterization: " + ipe.getMessage());
-      ipe.printStackTrace();
+    return run(runs, 1, threads, 1, 1, out, factory, params);
+  }
+
+  public static boolean run(final int runs, int creatorThreads,
+      int generatorThreads, int statisticsThreads, int writerThreads,
+      final PolygonLog out, final PolygonGeneratorFactory factory,
+      final Map<Parameters, Object> params) {
+    return run(runs, creatorThreads, generatorThreads, statisticsThreads,
+        writerThreads, 1, out, factory, params);
+  }
+
+  /**
+   * @param runs number of polygons to generate
+   * @param creatorThreads threads creating the generators
+   * @param generatorThreads threads generating the polygons
+   * @param statisticsThreads threads computing the statistics
+   * @param writerThreads threads writing to the log
+   * @param racers generators racing for each polygon, see class comment.
+   *          Each generator thread runs this many generators at a time.
+   * @return false, if the parameters were rejected by the factory.
+   */
+  public static boolean run(final int runs, int creatorThreads,
+      int generatorThreads, int statisticsThreads, int writerThreads,
+      final int racers, final PolygonLog out,
+      final PolygonGeneratorFactory factory,
+      final Map<Parameters, Object> params) {
+    if (racers > 1 && !factory.acceptsUserSuppliedPoints()) {
+      System.err.println("Racing needs an algorithm accepting a point set.");
       return false;
     }
-    
+
+    final AtomicInteger nextRun = new AtomicInteger(0);
+    final AtomicBoolean failed = new AtomicBoolean(false);
+
+    BlockingQueue<Job> created = createQueue(generatorThreads);
+    BlockingQueue<Job> generated = createQueue(statisticsThreads);
+    BlockingQueue<Job> computed = createQueue(writerThreads);
+
+    ExecutorService es = Executors.newFixedThreadPool(creatorThreads +
+        generatorThreads + statisticsThreads + writerThreads);
+    final ExecutorService raceExecutor = (racers > 1) ?
+        Executors.newFixedThreadPool(generatorThreads * racers) : null;
+
+    // Stage 1: create the generators.
+    AtomicInteger creators = new AtomicInteger(creatorThreads);
+    for (int i = 0; i < creatorThreads; i++) {
+      es.execute(new Stage(null, created, creators, generatorThreads) {
+        @Override
+        Job next() {
+          int run = nextRun.getAndIncrement();
+          if (failed.get() || run >= runs) return null;
+
+          Job job = new Job();
+          job.statistics = new PolygonStatistics();
+          job.statistics.seed = Random.seedFor(run);
+          job.random = new RandomNumbers(job.statistics.seed);
+          return job;
+        }
+
+        @Override
+        Job process(Job job) {
+          job.statistics.used_algorithm = factory.toString();
+          job.statistics.number_of_points = (Integer) params.get(Parameters.n);
+          Random previous = Random.bind(job.random);
+          try {
+            if (racers > 1)
+              job.racers = createRacers(job, racers, factory, params);
+            else
+              job.generator = factory.createInstance(params, job.statistics, null);
+          }
+          catch (IllegalParameterizationException ipe) {
+            if (!failed.getAndSet(true)) {
+              System.err.println("Illegal parameterization: " + ipe.getMessage());
+              ipe.printStackTrace();
+            }
+            return null;
+          }
+          finally {
+            Random.bind(previous);
+          }
+          return job;
+        }
+      });
+    }
+
+    // Stage 2: generate the polygons.
+    AtomicInteger generators = new AtomicInteger(generatorThreads);
+    for (int i = 0; i < generatorThreads; i++) {
+      es.execute(new Stage(created, generated, generators, statisticsThreads) {
+        @Override
+        Job process(Job job) {
+          if (job.racers != null) {
+            race(job, raceExecutor);
+          }
+          else {
+            Racer racer = new Racer(job.generator, job.random, job.statistics);
+            racer.call();
+            job.polygon = racer.polygon;
+            job.statistics.time_for_creating_polygon = racer.time;
+            job.statistics.timestamp = racer.start;
+            job.statistics.cpu_time_for_creating_polygon = racer.cpuTime;
+          }
+          if (job.polygon == null)
+            throw new RuntimeException(
+                "AlgorithmRunner/generate: polygon is null!");
+
+          // Release the generators and their point sets.
+          job.generator = null;
+          job.racers = null;
+          job.random = null;
+          return job;
+        }
+      });
+    }
+
+    // Stage 3: compute the statistics.
+    AtomicInteger calculators = new AtomicInteger(statisticsThreads);
+    for (int i = 0; i < statisticsThreads; i++) {
+      es.execute(new Stage(generated, computed, calculators, writerThreads) {
+        @Override
+        Job process(Job job) {
+          job.statistics.circumference = job.polygon.getCircumference();
+          job.statistics.surface_area = job.polygon.getSurfaceArea();
+          return job;
+        }
+      });
+    }
+
+    // Stage 4: write here Statistics and polygon
+    AtomicInteger writers = new AtomicInteger(writerThreads);
+    for (int i = 0; i < writerThreads; i++) {
+      es.execute(new Stage(computed, null, writers, 0) {
+        @Override
+        Job process(Job job) {
+          out.writeOut(job.polygon, job.statistics);
+          return null;
+        }
+      });
+    }
+
     es.shutdown();
 
     while (!es.isTerminated()) {
@@ -50,46 +220,232 @@ public class AlgorithmRunner
         e.printStackTrace();
       }
     }
+    if (raceExecutor != null) raceExecutor.shutdown();
 
-    return true;
+    return !failed.get();
   }
 
+  /**
+   * Creates the point set of the job, and the racing generators on copies
+   * of it. Racer i uses seed Random.seedFor(job seed, i).
+   */
+  private static Racer[] createRacers(Job job, int racers,
+      PolygonGeneratorFactory factory, Map<Parameters, Object> params)
+    throws IllegalParameterizationException {
+    List<Point> points = GeneratorUtils.createOrUsePoints(params, true);
 
-  public static class PolygonGeneratorWorker
-    implements Runnable
+    Racer[] result = new Racer[racers];
+    for (int i = 0; i < racers; i++) {
+      List<Point> copy = new ArrayList<Point>(points.size());
+      for (Point p : points)
+        copy.add(p.clone());
+
+      Map<Parameters, Object> racerParams =
+          new HashMap<Parameters, Object>(params);
+      racerParams.remove(Parameters.n);
+      racerParams.put(Parameters.points, copy);
+
+      PolygonStatistics statistics = new PolygonStatistics();
+      statistics.used_algorithm = job.statistics.used_algorithm;
+      statistics.number_of_points = job.statistics.number_of_points;
+      statistics.seed = Random.seedFor(job.statistics.seed, i);
+
+      RandomNumbers random = new RandomNumbers(statistics.seed);
+      Random previous = Random.bind(random);
+      try {
+        result[i] = new Racer(factory.createInstance(racerParams, statistics,
+            null), random, statistics);
+      }
+      finally {
+        Random.bind(previous);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Runs the racers of the job at the same time, and takes the first
+   * polygon. The others are stopped, and the job waits for them, to count
+   * their CPU time.
+   */
+  private static void race(Job job, ExecutorService executor) {
+    CompletionService<Racer> race = new ExecutorCompletionService<Racer>(executor);
+    for (Racer racer : job.racers)
+      race.submit(racer);
+
+    Racer winner = null;
+    long cpuTime = 0;
+    for (int i = 0; i < job.racers.length; i++) {
+      Racer racer;
+      try {
+        racer = race.take().get();
+      }
+      catch (InterruptedException e) {
+        for (Racer r : job.racers)
+          r.generator.stop();
+        throw new RuntimeException("AlgorithmRunner/race: interrupted", e);
+      }
+      catch (ExecutionException e) {
+        e.getCause().printStackTrace();
+        continue;
+      }
+
+      if (racer.cpuTime != null) cpuTime += racer.cpuTime;
+      if (winner == null && racer.polygon != null) {
+        winner = racer;
+        for (Racer r : job.racers)
+          if (r != winner) r.generator.stop();
+      }
+    }
+    if (winner == null) return;
+
+    job.polygon = winner.polygon;
+    job.statistics = winner.statistics;
+    job.statistics.racers = job.racers.length;
+    job.statistics.time_for_creating_polygon = winner.time;
+    job.statistics.timestamp = winner.start;
+    job.statistics.cpu_time_for_creating_polygon = cpuTime;
+  }
+
+  private static BlockingQueue<Job> createQueue(int consumers) {
+    return new ArrayBlockingQueue<Job>(QUEUE_SIZE_PER_THREAD * consumers);
+  }
+
+  /**
+   * A polygon on its way through the pipeline.
+   */
+  private static class Job
   {
-    PolygonGenerator polygonGenerator;
+    /** Marks the end of the input of a stage. */
+    static final Job END = new Job();
+
+    Random random;
+    PolygonGenerator generator;
+    Racer[] racers;
     PolygonStatistics statistics;
-    PolygonLog out;
-    
+    Polygon polygon;
+  }
+
+  /**
+   * A generator with its random generator, timed while generating.
+   */
+  private static class Racer
+    implements Callable<Racer>
+  {
+    private static final ThreadMXBean threads =
+        ManagementFactory.getThreadMXBean();
+
+    final PolygonGenerator generator;
+    final Random random;
+    final PolygonStatistics statistics;
+
+    Polygon polygon;
+    long start, time;
+    /** null, if not supported by the VM */
+    Long cpuTime;
+
+    Racer(PolygonGenerator generator, Random random,
+        PolygonStatistics statistics) {
+      this.generator = generator;
+      this.random = random;
+      this.statistics = statistics;
+    }
+
+    @Override
+    public Racer call() {
+      boolean cpu = threads.isCurrentThreadCpuTimeSupported();
+      Random previous = Random.bind(random);
+      try {
+        long cpuStart = cpu ? threads.getCurrentThreadCpuTime() : 0;
+        start = System.nanoTime();
+        polygon = generator.generate();
+        time = System.nanoTime() - start;
+        if (cpu) cpuTime = threads.getCurrentThreadCpuTime() - cpuStart;
+      }
+      finally {
+        Random.bind(previous);
+      }
+      return this;
+    }
+  }
+
+  /**
+   * One thread of a pipeline stage. The last thread of a stage to finish
+   * passes one END marker to each thread of the next stage.
+   */
+  private static abstract class Stage
+    implements Runnable
+  {
+    private final BlockingQueue<Job> in, out;
+    private final AtomicInteger running;
+    private final int consumers;
 
-    public PolygonGeneratorWorker(PolygonLog out, PolygonGeneratorFactory factory,
-        Map<Parameters, Object> params) throws IllegalParameterizationException {
+    Stage(BlockingQueue<Job> in, BlockingQueue<Job> out,
+        AtomicInteger running, int consumers) {
+      this.in = in;
       this.out = out;
-      statistics = new PolygonStatistics();
-      statistics.used_algorithm = factory.toString();
-      statistics.number_of_points = (Integer) params.get(Parameters.n);
-      polygonGenerator = factory.createInstance(params, statistics, null);
+      this.running = running;
+      this.consumers = consumers;
+    }
+
+    /**
+     * @return the next job, or null if there is none left.
+     */
+    Job next() {
+      Job job = take(in);
+      return job == Job.END ? null : job;
     }
 
+    /**
+     * @return the job for the next stage, or null to drop it.
+     */
+    abstract Job process(Job job);
+
     @Override
     public void run() {
-      long start = System.nanoTime();
-      Polygon polygon = polygonGenerator.generate();
-      long end = System.nanoTime();
-      if (polygon == null)
-        throw new RuntimeException(
-            "PolygonGeneratorWorker/run: polygon is null!");
-      
-      statistics.time_for_creating_polygon = end - start;
-      statistics.timestamp = start;
-      statistics.circumference = polygon.getCircumference();
-      statistics.surface_area = polygon.getSurfaceArea();
-      
-      //write here Statistics and polygon
-      out.writeOut(polygon, statistics);
+      try {
+        Job job;
+        while ((job = next()) != null) {
+          try {
+            job = process(job);
+          }
+          catch (RuntimeException e) {
+            e.printStackTrace();
+            continue;
+          }
+
+          if (job != null && out != null) put(out, job);
+        }
+      }
+      finally {
+        if (running.decrementAndGet() == 0 && out != null) {
+          for (int i = 0; i < consumers; i++)
+            put(out, Job.END);
+        }
+      }
     }
 
-  }
+    private static Job take(BlockingQueue<Job> queue) {
+      while (true) {
+        try {
+          return queue.take();
+        }
+        catch (InterruptedException e) {
+          e.printStackTrace();
+        }
+      }
+    }
 
+    private static void put(BlockingQueue<Job> queue, Job job) {
+      while (true) {
+        try {
+          queue.put(job);
+          return;
+        }
+        catch (InterruptedException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
 }
@@ -1,15 +1,34 @@
 package polygonsSWP.analysis;
 
-import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.geometry.PackedPolygon;
+import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
 
 /**
+ * Writes polygons (and statistics) as one line per polygon:
+ * "x y:x y:...:x y;used_algorithm;number_of_points;...".
+ *
+ * Every thread encodes its lines into its own byte buffer, which is written
+ * out in one piece once it is full. Lines of different threads therefore do
+ * not appear in order of completion, but are never mixed. In sharded mode
+ * every thread writes into its own file instead.
+ *
+ * When generators race for each polygon, the statistics get two more
+ * columns, cpu_time_for_creating_polygon and racers. The CPU time is that of
+ * the racers' own threads, without helper threads of the generators (see
+ * AlgorithmRunner). With a master seed, the seed of each polygon's generator
+ * follows as the last column, so single polygons can be reproduced. Without
+ * either option the layout is unchanged.
+ *
  * (c) 2011-2012
  * @author Steve Dierker <dierker.steve@fu-berlin.de>
  * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
@@ -20,71 +39,301 @@ import polygonsSWP.geometry.Polygon;
  */
 public class CsvLog implements PolygonLog
 {
-  private boolean writeStatistics;
-  private PrintWriter file;
-  
-	public CsvLog(OutputStream out, boolean writeHeader, boolean writeStatistics) throws IOException
-	{
-		this.writeStatistics = writeStatistics;
-		file = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out)));
-		
-		if(writeHeader)
-		{
-		  file.print("polygon");
-		  if(writeStatistics)
-		    file.print(";used_algorithm;number_of_points;surface_area;circumference;timestamp;" +
-		        "time_for_creating_polygon;iterations;rejections;count_of_backtracks;radius;" +
-		        "avg_velocity_without_collisions;initializeRejections;maximumRejections");
-		  file.println();
-		}
-	}
-	
-	@Override
-	public void writeOut(Polygon polygon, PolygonStatistics statistics) {
-		synchronized (file) {
-		  StringBuilder sb = new StringBuilder();
-			
-		  // Write polygon.
-			String s = polygon.toString().replaceAll("\n", ":");
-			sb.append(s.substring(0, s.length()-1));
-			
-			// Write statistics.
-			if(writeStatistics) {
-		    sb.append(';');
-		    sb.append(statistics.used_algorithm);
-		    sb.append(';');
-		    sb.append(statistics.number_of_points);
-		    sb.append(';');
-		    sb.append(statistics.surface_area);
-		    sb.append(';');
-		    sb.append(statistics.circumference);
-		    sb.append(';');
-		    sb.append(statistics.timestamp);
-		    sb.append(';');
-		    sb.append(statistics.time_for_creating_polygon);
-		    sb.append(';');
-		    sb.append(statistics.iterations);
-		    sb.append(';');
-		    sb.append(statistics.rejections);
-		    sb.append(';');
-		    sb.append(statistics.count_of_backtracks);
-		    sb.append(';');
-		    sb.append(statistics.radius);
-		    sb.append(';');
-		    sb.append(statistics.avg_velocity_without_collisions);
-		    sb.append(';');
-		    sb.append(statistics.initializeRejections);
-		    sb.append(';');
-		    sb.append(statistics.maximumRejections);
-			}
-			
-			file.write(sb.toString());
-			file.write('\n');
-			file.flush();
-		}
-	}
-	
-	public void close() {
-	  file.close();
-	}
+  /** A thread's buffer is written out once it holds this many bytes. */
+  private static final int FLUSH_SIZE = 1 << 16;
+
+  private static final String HEADER = "polygon";
+  private static final String STATISTICS_HEADER =
+      ";used_algorithm;number_of_points;surface_area;circumference;timestamp;" +
+          "time_for_creating_polygon;iterations;rejections;count_of_backtracks;radius;" +
+          "avg_velocity_without_collisions;initializeRejections;maximumRejections";
+  private static final String RACING_HEADER =
+      ";cpu_time_for_creating_polygon;racers";
+  private static final String SEED_HEADER = ";seed";
+
+  private final boolean writeHeader;
+  private final boolean writeStatistics;
+  private final boolean racing;
+  private final boolean seed;
+
+  /* Shared output, null in sharded mode. */
+  private final OutputStream out;
+  /* Path of the shards, null if not sharded. */
+  private final File shards;
+
+  private final List<Encoder> encoders = new ArrayList<Encoder>();
+  private final ThreadLocal<Encoder> encoder = new ThreadLocal<Encoder>() {
+    @Override
+    protected Encoder initialValue() {
+      synchronized (encoders) {
+        Encoder e = new Encoder((out != null) ? out : openShard(encoders.size()));
+        encoders.add(e);
+        return e;
+      }
+    }
+  };
+
+  public CsvLog(OutputStream out, boolean writeHeader, boolean writeStatistics)
+    throws IOException {
+    this(out, writeHeader, writeStatistics, false);
+  }
+
+  public CsvLog(OutputStream out, boolean writeHeader, boolean writeStatistics,
+      boolean racing)
+    throws IOException {
+    this(out, writeHeader, writeStatistics, racing, false);
+  }
+
+  /**
+   * @param racing whether to add the columns of racing generators to the
+   *          statistics
+   * @param seed whether to add the seed of each polygon to the statistics
+   */
+  public CsvLog(OutputStream out, boolean writeHeader, boolean writeStatistics,
+      boolean racing, boolean seed)
+    throws IOException {
+    this.writeHeader = writeHeader;
+    this.writeStatistics = writeStatistics;
+    this.racing = racing;
+    this.seed = seed;
+    this.out = out;
+    this.shards = null;
+
+    if (writeHeader) writeHeader(out);
+  }
+
+  /**
+   * Creates a log, which writes the lines of each thread into its own file.
+   * The files are named like the given one with the number of the thread
+   * inserted before the extension, e.g. "out.0.csv", "out.1.csv", ...
+   * Each file gets its own header.
+   */
+  public CsvLog(File file, boolean writeHeader, boolean writeStatistics) {
+    this(file, writeHeader, writeStatistics, false);
+  }
+
+  public CsvLog(File file, boolean writeHeader, boolean writeStatistics,
+      boolean racing) {
+    this(file, writeHeader, writeStatistics, racing, false);
+  }
+
+  public CsvLog(File file, boolean writeHeader, boolean writeStatistics,
+      boolean racing, boolean seed) {
+    this.writeHeader = writeHeader;
+    this.writeStatistics = writeStatistics;
+    this.racing = racing;
+    this.seed = seed;
+    this.out = null;
+    this.shards = file;
+  }
+
+  @Override
+  public void writeOut(Polygon polygon, PolygonStatistics statistics) {
+    Encoder e = encoder.get();
+
+    // Write polygon. A PackedPolygon is read from its arrays directly,
+    // without creating a Point per vertex.
+    if (polygon instanceof PackedPolygon) {
+      PackedPolygon packed = (PackedPolygon) polygon;
+      for (int i = 0; i < packed.size(); i++) {
+        if (i > 0) e.put(':');
+        e.put(packed.getX(i));
+        e.put(' ');
+        e.put(packed.getY(i));
+      }
+    }
+    else {
+      List<Point> points = polygon.getPoints();
+      for (int i = 0; i < points.size(); i++) {
+        Point p = points.get(i);
+        if (i > 0) e.put(':');
+        e.put(p.x);
+        e.put(' ');
+        e.put(p.y);
+      }
+    }
+
+    // Write statistics.
+    if (writeStatistics) {
+      e.put(';');
+      e.put(statistics.used_algorithm);
+      e.put(';');
+      e.put(statistics.number_of_points);
+      e.put(';');
+      e.put(statistics.surface_area);
+      e.put(';');
+      e.put(statistics.circumference);
+      e.put(';');
+      e.put(statistics.timestamp);
+      e.put(';');
+      e.put(statistics.time_for_creating_polygon);
+      e.put(';');
+      e.put(statistics.iterations);
+      e.put(';');
+      e.put(statistics.rejections);
+      e.put(';');
+      e.put(statistics.count_of_backtracks);
+      e.put(';');
+      e.put(statistics.radius);
+      e.put(';');
+      e.put(statistics.avg_velocity_without_collisions);
+      e.put(';');
+      e.put(statistics.initializeRejections);
+      e.put(';');
+      e.put(statistics.maximumRejections);
+
+      if (racing) {
+        e.put(';');
+        e.put(statistics.cpu_time_for_creating_polygon);
+        e.put(';');
+        e.put(statistics.racers);
+      }
+
+      if (seed) {
+        e.put(';');
+        e.put(statistics.seed);
+      }
+    }
+    e.put('\n');
+
+    if (e.pos >= FLUSH_SIZE) e.drain();
+  }
+
+  /**
+   * Writes the remaining buffers. Must not be called while other threads are
+   * still writing.
+   */
+  public void close() {
+    synchronized (encoders) {
+      try {
+        for (Encoder e : encoders) {
+          e.drain();
+          if (e.target != out) e.target.close();
+        }
+        if (out != null) out.close();
+      }
+      catch (IOException e) {
+        throw new RuntimeException("CsvLog/close: " + e.getMessage(), e);
+      }
+      encoders.clear();
+    }
+  }
+
+  private void writeHeader(OutputStream os)
+    throws IOException {
+    String header = HEADER;
+    if (writeStatistics) header += STATISTICS_HEADER;
+    if (writeStatistics && racing) header += RACING_HEADER;
+    if (writeStatistics && seed) header += SEED_HEADER;
+    os.write((header + "\n").getBytes("US-ASCII"));
+  }
+
+  private OutputStream openShard(int index) {
+    String name = shards.getName();
+    int dot = name.lastIndexOf('.');
+    name = (dot < 0) ? name + "." + index
+        : name.substring(0, dot) + "." + index + name.substring(dot);
+
+    try {
+      OutputStream os = new FileOutputStream(new File(shards.getParentFile(), name));
+      if (writeHeader) writeHeader(os);
+      return os;
+    }
+    catch (IOException e) {
+      throw new RuntimeException("CsvLog/openShard: " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Encodes values into a growing byte buffer. Doubles are formatted exactly
+   * like Double.toString(), but without going through a String.
+   */
+  private static class Encoder
+  {
+    final OutputStream target;
+    byte[] buf = new byte[FLUSH_SIZE + 1024];
+    int pos = 0;
+
+    Encoder(OutputStream target) {
+      this.target = target;
+    }
+
+    void drain() {
+      if (pos == 0) return;
+      try {
+        synchronized (target) {
+          target.write(buf, 0, pos);
+        }
+      }
+      catch (IOException e) {
+        throw new RuntimeException("CsvLog/drain: " + e.getMessage(), e);
+      }
+      pos = 0;
+    }
+
+    private void ensure(int n) {
+      if (pos + n > buf.length)
+        buf = Arrays.copyOf(buf, Math.max(2 * buf.length, pos + n));
+    }
+
+    void put(char c) {
+      ensure(1);
+      buf[pos++] = (byte) c;
+    }
+
+    void put(String s) {
+      if (s == null) s = "null";
+      int n = s.length();
+      ensure(n);
+      for (int i = 0; i < n; i++)
+        buf[pos++] = (byte) s.charAt(i);
+    }
+
+    void put(long v) {
+      if (v == Long.MIN_VALUE) {
+        put(Long.toString(v));
+        return;
+      }
+
+      ensure(20);
+      if (v < 0) {
+        buf[pos++] = '-';
+        v = -v;
+      }
+
+      // Write digits backwards, then reverse them.
+      int start = pos;
+      do {
+        buf[pos++] = (byte) ('0' + v % 10);
+        v /= 10;
+      }
+      while (v != 0);
+
+      for (int i = start, j = pos - 1; i < j; i++, j--) {
+        byte t = buf[i];
+        buf[i] = buf[j];
+        buf[j] = t;
+      }
+    }
+
+    void put(double v) {
+      ensure(DoubleEncoder.MAX_LENGTH);
+      pos = DoubleEncoder.put(v, buf, pos);
+    }
+
+    void put(Integer v) {
+      if (v == null) put("null");
+      else put(v.longValue());
+    }
+
+    void put(Long v) {
+      if (v == null) put("null");
+      else put(v.longValue());
+    }
+
+    void put(Double v) {
+      if (v == null) put("null");
+      else put(v.doubleValue());
+    }
+  }
 }
@@ -1,6 +1,12 @@
 package polygonsSWP.analysis;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import com.almworks.sqlite4java.SQLiteConnection;
 import com.almworks.sqlite4java.SQLiteJob;
@@ -11,26 +17,87 @@ import polygonsSWP.data.PolygonStatistics;
 import polygonsSWP.geometry.Polygon;
 
 
+/**
+ * Saves the statistics of the generated polygons into a SQLite database.
+ * Rows are buffered and inserted in batches, each batch in one transaction
+ * using one prepared statement. A batch is committed as soon as it holds
+ * batchSize rows or its oldest row is older than maxBatchAge milliseconds;
+ * the latter is enforced by a timer, so rows do not linger while the
+ * generators are slow or idle. The database runs in WAL journal mode.
+ *
+ * Columns added after the original layout (the racing columns and seed) are
+ * nullable, and added to existing databases when they are opened.
+ */
 public class DatabaseLog
   implements PolygonLog
 {
+  public static final int DEFAULT_BATCH_SIZE = 1000;
+  public static final long DEFAULT_MAX_BATCH_AGE = 1000;
+
   private SQLiteConnection con;
   private SQLiteQueue queue;
 
+  private final int batchSize;
+  private final long maxBatchAge;
+
+  private List<PolygonStatistics> batch;
+  private long batchStart;
+
+  /* Flushes batches once they reach maxBatchAge. */
+  private final ScheduledExecutorService timer =
+      Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable r) {
+          Thread t = new Thread(r, "DatabaseLog timer");
+          t.setDaemon(true);
+          return t;
+        }
+      });
+
+  /* Only accessed by the queue thread. */
+  private SQLiteStatement stmt;
+  private long rows = 0;
+  private long transactions = 0;
+
+  private final long start = System.nanoTime();
+
   private final String sql =
       "INSERT INTO Statistic "
           + "(id, used_algorithm, number_of_points, surface_area, circumference, timestamp, time_for_creating_polygon, "
-          + "iterations, rejections, count_of_backtracks, radius, avg_velocity_without_collisions, initializeRejections, maximumRejections) "
-          + "VALUES(null,?,?,?,?,?,?,?,?,?,?,?,?,?)";
+          + "iterations, rejections, count_of_backtracks, radius, avg_velocity_without_collisions, initializeRejections, maximumRejections, "
+          + "cpu_time_for_creating_polygon, racers, seed) "
+          + "VALUES(null,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?,?)";
 
   public DatabaseLog(String database)
     throws Exception {
+    this(database, DEFAULT_BATCH_SIZE, DEFAULT_MAX_BATCH_AGE);
+  }
+
+  /**
+   * @param database path of the database file
+   * @param batchSize maximum number of rows per transaction
+   * @param maxBatchAge maximum time in milliseconds a row is buffered
+   */
+  public DatabaseLog(String database, int batchSize, long maxBatchAge)
+    throws Exception {
+    if (batchSize < 1)
+      throw new IllegalArgumentException("batch size has to be positive");
+    if (maxBatchAge < 0)
+      throw new IllegalArgumentException("max batch age must not be negative");
+
+    this.batchSize = batchSize;
+    this.maxBatchAge = maxBatchAge;
+    this.batch = new ArrayList<PolygonStatistics>(batchSize);
+
     File db = new File(database);
     boolean create_table = !db.exists();
 
     con = new SQLiteConnection(db);
     con.open();
 
+    // The journal mode is persistent, so the queue's connection uses it too.
+    con.exec("PRAGMA journal_mode=WAL");
+
     if (create_table) {
       con.exec("CREATE TABLE Statistic ("
           + "id integer primary key autoincrement," + "used_algorithm integer,"
@@ -39,51 +106,158 @@ public class DatabaseLog
           + "time_for_creating_polygon," + "iterations integer,"
           + "rejections integer," + "count_of_backtracks integer,"
           + "radius decimal," + "avg_velocity_without_collisions decimal,"
-          + "initializeRejections integer," + "maximumRejections integer" + ")");
+          + "initializeRejections integer," + "maximumRejections integer,"
+          + "cpu_time_for_creating_polygon integer," + "racers integer,"
+          + "seed integer" + ")");
+    }
+    else {
+      addMissingColumns();
     }
 
     queue = new SQLiteQueue(db);
     queue.start();
   }
 
+  /**
+   * Adds the columns for racing generators and the seed to tables created
+   * before they existed. Rows without these values leave them NULL.
+   */
+  private void addMissingColumns()
+    throws Exception {
+    List<String> columns = new ArrayList<String>();
+    SQLiteStatement st = con.prepare("PRAGMA table_info(Statistic)");
+    try {
+      while (st.step())
+        columns.add(st.columnString(1));
+    }
+    finally {
+      st.dispose();
+    }
+
+    if (!columns.contains("racers")) {
+      con.exec("ALTER TABLE Statistic ADD COLUMN cpu_time_for_creating_polygon integer");
+      con.exec("ALTER TABLE Statistic ADD COLUMN racers integer");
+    }
+    if (!columns.contains("seed"))
+      con.exec("ALTER TABLE Statistic ADD COLUMN seed integer");
+  }
+
   @Override
   public void writeOut(Polygon polygon, final PolygonStatistics stats) {
-    synchronized (queue) {
-      queue.execute(new SQLiteJob<Object>() {
-        @Override
-        protected Object job(SQLiteConnection con)
-          throws Throwable {
-          SQLiteStatement stmt = con.prepare(sql);
-          stmt.bind(1, stats.used_algorithm);
-          stmt.bind(2, stats.number_of_points);
-          stmt.bind(3, stats.surface_area);
-          stmt.bind(4, stats.circumference);
-          stmt.bind(5, stats.timestamp);
-          stmt.bind(6, stats.time_for_creating_polygon);
-          if (stats.iterations != null) 
-            stmt.bind(7, stats.iterations);
-          if (stats.rejections != null) 
-            stmt.bind(8, stats.rejections);
-          if (stats.count_of_backtracks != null)
-            stmt.bind(9, stats.count_of_backtracks);
-          if (stats.radius != null) 
-            stmt.bind(10, stats.radius);
-          if (stats.avg_velocity_without_collisions != null)
-            stmt.bind(11, stats.avg_velocity_without_collisions);
-          if (stats.initializeRejections != null)
-            stmt.bind(12, stats.initializeRejections);
-          if (stats.maximumRejections != null)
-            stmt.bind(13, stats.maximumRejections);
-          
-          stmt.stepThrough();
-          return null;
-        }
-      });
+    synchronized (this) {
+      long now = System.currentTimeMillis();
+      if (batch.isEmpty()) {
+        batchStart = now;
+        scheduleFlush(batch);
+      }
+      batch.add(stats);
+
+      if (batch.size() >= batchSize || now - batchStart >= maxBatchAge)
+        flush();
     }
   }
 
+  /**
+   * Flushes the given batch after maxBatchAge, unless it has been flushed
+   * before. Caller has to hold the lock.
+   */
+  private void scheduleFlush(final List<PolygonStatistics> pending) {
+    if (timer.isShutdown()) return;
+
+    timer.schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (DatabaseLog.this) {
+          if (batch == pending) flush();
+        }
+      }
+    }, maxBatchAge, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Hands the buffered rows to the queue as one transaction.
+   * Caller has to hold the lock.
+   */
+  private void flush() {
+    if (batch.isEmpty()) return;
+
+    final List<PolygonStatistics> pending = batch;
+    batch = new ArrayList<PolygonStatistics>(batchSize);
+
+    queue.execute(new SQLiteJob<Object>() {
+      @Override
+      protected Object job(SQLiteConnection con)
+        throws Throwable {
+        if (stmt == null) stmt = con.prepare(sql);
+
+        con.exec("BEGIN");
+        try {
+          for (PolygonStatistics stats : pending)
+            insert(stats);
+          con.exec("COMMIT");
+        }
+        catch (Throwable t) {
+          con.exec("ROLLBACK");
+          throw t;
+        }
+
+        rows += pending.size();
+        transactions++;
+        return null;
+      }
+    });
+  }
+
+  private void insert(PolygonStatistics stats)
+    throws Exception {
+    stmt.reset(true);
+    stmt.bind(1, stats.used_algorithm);
+    stmt.bind(2, stats.number_of_points);
+    stmt.bind(3, stats.surface_area);
+    stmt.bind(4, stats.circumference);
+    stmt.bind(5, stats.timestamp);
+    stmt.bind(6, stats.time_for_creating_polygon);
+    if (stats.iterations != null)
+      stmt.bind(7, stats.iterations);
+    if (stats.rejections != null)
+      stmt.bind(8, stats.rejections);
+    if (stats.count_of_backtracks != null)
+      stmt.bind(9, stats.count_of_backtracks);
+    if (stats.radius != null)
+      stmt.bind(10, stats.radius);
+    if (stats.avg_velocity_without_collisions != null)
+      stmt.bind(11, stats.avg_velocity_without_collisions);
+    if (stats.initializeRejections != null)
+      stmt.bind(12, stats.initializeRejections);
+    if (stats.maximumRejections != null)
+      stmt.bind(13, stats.maximumRejections);
+    if (stats.cpu_time_for_creating_polygon != null)
+      stmt.bind(14, stats.cpu_time_for_creating_polygon);
+    if (stats.racers != null)
+      stmt.bind(15, stats.racers);
+    if (stats.seed != null)
+      stmt.bind(16, stats.seed);
+
+    stmt.stepThrough();
+  }
+
   @Override
   public void close() {
+    synchronized (this) {
+      timer.shutdownNow();
+      flush();
+    }
+
+    queue.execute(new SQLiteJob<Object>() {
+      @Override
+      protected Object job(SQLiteConnection con)
+        throws Throwable {
+        if (stmt != null) stmt.dispose();
+        stmt = null;
+        return null;
+      }
+    });
+
     try {
       queue.stop(true).join();
     }
@@ -91,5 +265,10 @@ public class DatabaseLog
       // Ignore.
     }
     con.dispose();
+
+    double seconds = (System.nanoTime() - start) / 1E9;
+    System.err.println(String.format(
+        "DatabaseLog: %d rows in %d transactions, %.1f rows/s", rows,
+        transactions, rows / seconds));
   }
 }
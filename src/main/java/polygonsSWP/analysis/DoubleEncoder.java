@@ -0,0 +1,290 @@
+package polygonsSWP.analysis;
+
+import java.math.BigInteger;
+
+/**
+ * Formats doubles into a byte buffer like Double.toString(), without
+ * allocating. The digits are the shortest decimal that rounds back to the
+ * double (the one closest to it if there are several), computed with the
+ * Schubfach algorithm of R. Giulietti, "The Schubfach way to render doubles",
+ * 2020, which Double.toString() itself uses since Java 19.
+ *
+ * Older runtimes print some doubles of magnitude 1E16 and above as well as
+ * some subnormals with more digits than needed. There, these are left to
+ * Double.toString(), so the output is the same on every runtime.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+final class DoubleEncoder
+{
+  /** Upper bound of the number of bytes written by put(). */
+  static final int MAX_LENGTH = 32;
+
+  /* Precision, minimal exponent and minimal normal significand of doubles. */
+  private static final int P = 53;
+  private static final int Q_MIN = -1074;
+  private static final long C_MIN = 1L << (P - 1);
+  /* Subnormal significands below this have less than two digits. */
+  private static final long C_TINY = 3;
+  private static final long T_MASK = C_MIN - 1;
+  private static final int BQ_MASK = 0x7ff;
+  private static final long MASK_63 = (1L << 63) - 1;
+
+  /* Range of decimal exponents the table g is needed for. */
+  private static final int K_MIN = -324;
+  private static final int K_MAX = 292;
+
+  /* Number of digits written before trailing zeros are removed. */
+  private static final int H = 17;
+
+  private static final boolean LEGACY_TO_STRING =
+      !"9.9E-324".equals(Double.toString(1.0E-323));
+
+  private static final long[] POW10 = new long[H + 1];
+
+  /*
+   * g = floor(10^-k 2^(125 - flog2pow10(-k))) + 1, a 126 bit approximation of
+   * 10^-k, split into its upper (G1) and lower (G0) 63 bits.
+   */
+  private static final long[] G1 = new long[K_MAX - K_MIN + 1];
+  private static final long[] G0 = new long[K_MAX - K_MIN + 1];
+
+  static {
+    POW10[0] = 1;
+    for (int i = 1; i <= H; i++)
+      POW10[i] = 10 * POW10[i - 1];
+
+    BigInteger mask = BigInteger.ONE.shiftLeft(63).subtract(BigInteger.ONE);
+    for (int k = K_MIN; k <= K_MAX; k++) {
+      int shift = 125 - flog2pow10(-k);
+      BigInteger g;
+      if (k <= 0) {
+        g = BigInteger.TEN.pow(-k).shiftLeft(shift);
+      }
+      else if (shift >= 0) {
+        g = BigInteger.ONE.shiftLeft(shift).divide(BigInteger.TEN.pow(k));
+      }
+      else {
+        throw new RuntimeException("DoubleEncoder/<clinit>: invalid shift");
+      }
+      g = g.add(BigInteger.ONE);
+      G1[k - K_MIN] = g.shiftRight(63).longValue();
+      G0[k - K_MIN] = g.and(mask).longValue();
+    }
+  }
+
+  private DoubleEncoder() {}
+
+  /**
+   * Writes v as Double.toString(v) would into buf, starting at pos, which
+   * must leave room for MAX_LENGTH bytes.
+   * @return the position after the last written byte.
+   */
+  static int put(double v, byte[] buf, int pos) {
+    long bits = Double.doubleToRawLongBits(v);
+    long t = bits & T_MASK;
+    int bq = (int) (bits >>> (P - 1)) & BQ_MASK;
+
+    if (bq == BQ_MASK) {
+      if (t != 0) return put("NaN", buf, pos);
+      return put((bits > 0) ? "Infinity" : "-Infinity", buf, pos);
+    }
+
+    if (LEGACY_TO_STRING && v != 0 &&
+        (Math.abs(v) >= 1E16 || Math.abs(v) < Double.MIN_NORMAL))
+      return put(Double.toString(v), buf, pos);
+
+    if (bits < 0) buf[pos++] = '-';
+
+    if (bq != 0) {
+      // Normal value, v = c 2^-mq.
+      int mq = -Q_MIN + 1 - bq;
+      long c = C_MIN | t;
+      if (0 < mq && mq < P) {
+        // Integers below 2^53 are their own shortest decimal.
+        long f = c >> mq;
+        if (f << mq == c) return toChars(f, 0, buf, pos);
+      }
+      return toDecimal(-mq, c, 0, buf, pos);
+    }
+
+    if (t != 0) {
+      // Subnormal value.
+      return (t < C_TINY) ? toDecimal(Q_MIN, 10 * t, -1, buf, pos)
+          : toDecimal(Q_MIN, t, 0, buf, pos);
+    }
+
+    return put("0.0", buf, pos);
+  }
+
+  /**
+   * Writes the shortest decimal in the rounding interval of c 2^q, scaled
+   * by 10^dk.
+   */
+  private static int toDecimal(int q, long c, int dk, byte[] buf, int pos) {
+    int out = (int) c & 0x1;
+    long cb = c << 2;
+    long cbr = cb + 2;
+    long cbl;
+    int k;
+    if (c != C_MIN || q == Q_MIN) {
+      cbl = cb - 2;
+      k = flog10pow2(q);
+    }
+    else {
+      // The interval is asymmetric at powers of two.
+      cbl = cb - 1;
+      k = flog10threeQuartersPow2(q);
+    }
+    int h = q + flog2pow10(-k) + 2;
+
+    // v, its lower and its upper interval bound, times 10^-k 2^2.
+    long g1 = G1[k - K_MIN];
+    long g0 = G0[k - K_MIN];
+    long vb = rop(g1, g0, cb << h);
+    long vbl = rop(g1, g0, cbl << h);
+    long vbr = rop(g1, g0, cbr << h);
+
+    long s = vb >> 2;
+    if (s >= 100) {
+      // At most one multiple of 10 lies in the interval.
+      long sp10 = 10 * multiplyHigh(s, 115292150460684698L << 4);
+      long tp10 = sp10 + 10;
+      boolean upin = vbl + out <= sp10 << 2;
+      boolean wpin = (tp10 << 2) + out <= vbr;
+      if (upin != wpin) return toChars(upin ? sp10 : tp10, k + dk, buf, pos);
+    }
+
+    // Otherwise choose between s and s + 1, the closer one or the even one.
+    long u = s + 1;
+    boolean uin = vbl + out <= s << 2;
+    boolean win = (u << 2) + out <= vbr;
+    if (uin != win) return toChars(uin ? s : u, k + dk, buf, pos);
+    long cmp = vb - ((s + u) << 1);
+    return toChars((cmp < 0 || cmp == 0 && (s & 0x1) == 0) ? s : u, k + dk,
+        buf, pos);
+  }
+
+  /**
+   * Rounds g cp / 2^127 to odd.
+   */
+  private static long rop(long g1, long g0, long cp) {
+    long x1 = multiplyHigh(g0, cp);
+    long y0 = g1 * cp;
+    long y1 = multiplyHigh(g1, cp);
+    long z = (y0 >>> 1) + x1;
+    long vbp = y1 + (z >>> 63);
+    return vbp | ((z & MASK_63) + MASK_63) >>> 63;
+  }
+
+  /**
+   * Writes f 10^e in the format of Double.toString().
+   */
+  private static int toChars(long f, int e, byte[] buf, int pos) {
+    // Normalize f to H digits, so f 10^(e - H) is the value.
+    int len = flog10pow2(Long.SIZE - Long.numberOfLeadingZeros(f));
+    if (f >= POW10[len]) len++;
+    f *= POW10[H - len];
+    e += len;
+
+    // Significant digits without trailing zeros, at least one.
+    int n = H;
+    while (n > 1 && f % 10 == 0) {
+      f /= 10;
+      n--;
+    }
+
+    if (0 < e && e <= 7) {
+      // Plain notation without leading zeros.
+      pos = putDigits(f, n, buf, pos, e);
+      if (n <= e) {
+        for (int i = n; i < e; i++)
+          buf[pos++] = '0';
+        buf[pos++] = '.';
+        buf[pos++] = '0';
+      }
+      return pos;
+    }
+
+    if (-3 < e && e <= 0) {
+      // Plain notation with leading zeros.
+      buf[pos++] = '0';
+      buf[pos++] = '.';
+      for (int i = e; i < 0; i++)
+        buf[pos++] = '0';
+      return putDigits(f, n, buf, pos, 0);
+    }
+
+    // Computerized scientific notation, d.ddd...E[-]n.
+    pos = putDigits(f, n, buf, pos, 1);
+    if (n == 1) {
+      buf[pos++] = '.';
+      buf[pos++] = '0';
+    }
+    buf[pos++] = 'E';
+    int x = e - 1;
+    if (x < 0) {
+      buf[pos++] = '-';
+      x = -x;
+    }
+    if (x >= 100) buf[pos++] = (byte) ('0' + x / 100);
+    if (x >= 10) buf[pos++] = (byte) ('0' + x / 10 % 10);
+    buf[pos++] = (byte) ('0' + x % 10);
+    return pos;
+  }
+
+  /**
+   * Writes the n digits of f, with a decimal point after the first point
+   * digits if there are more.
+   */
+  private static int putDigits(long f, int n, byte[] buf, int pos, int point) {
+    int end = (point > 0 && point < n) ? pos + n + 1 : pos + n;
+    for (int i = n - 1, p = end - 1; i >= 0; i--) {
+      buf[p--] = (byte) ('0' + f % 10);
+      f /= 10;
+      if (i == point && point > 0) buf[p--] = '.';
+    }
+    return end;
+  }
+
+  private static int put(String s, byte[] buf, int pos) {
+    for (int i = 0; i < s.length(); i++)
+      buf[pos++] = (byte) s.charAt(i);
+    return pos;
+  }
+
+  /* floor(log10(2^e)) */
+  private static int flog10pow2(int e) {
+    return (int) (e * 661971961083L >> 41);
+  }
+
+  /* floor(log10(3/4 2^e)) */
+  private static int flog10threeQuartersPow2(int e) {
+    return (int) (e * 661971961083L + -274743187321L >> 41);
+  }
+
+  /* floor(log2(10^e)) */
+  private static int flog2pow10(int e) {
+    return (int) (e * 913124641741L >> 38);
+  }
+
+  /* Upper 64 bits of the 128 bit product of x and y. */
+  private static long multiplyHigh(long x, long y) {
+    long x1 = x >> 32;
+    long x2 = x & 0xffffffffL;
+    long y1 = y >> 32;
+    long y2 = y & 0xffffffffL;
+    long z2 = x2 * y2;
+    long t = x1 * y2 + (z2 >>> 32);
+    long z1 = t & 0xffffffffL;
+    long z0 = t >> 32;
+    z1 += x2 * y1;
+    return x1 * y1 + z0 + (z1 >> 32);
+  }
+}
@@ -20,6 +20,9 @@ public class PolygonStatistics
   public String used_algorithm = null;
   public Long timestamp = null;//System.currentTimeMillis();, use at start of algorithm
   public Long time_for_creating_polygon = null; //in Millisecs
+  public Long seed = null; // seed of the polygon's random generator
+  public Long cpu_time_for_creating_polygon = null; // in nanosecs, of the racers' threads only
+  public Integer racers = null; // number of generators racing for the polygon
   
   //Permute & Reject + IC&BT + Virmani + SteadyGrowth
   public Integer iterations = null;
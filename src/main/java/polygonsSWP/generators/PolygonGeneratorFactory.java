@@ -71,6 +71,16 @@ public interface PolygonGeneratorFactory
     /** Size of circle for initial regular polygon (Long). */
     radius, 
     /** Speed of vertex movements (Double). */
-    velocity
+    velocity,
+    /**
+     * Number of threads per polygon, optional (Integer). Virmani's velocity
+     * algorithm moves the vertices in batches, Enumerating P&R searches and
+     * Space Partitioning recurses in parallel.
+     */
+    threads,
+    /** File to write the search state to, optional (String). */
+    checkpoint,
+    /** Whether to resume from the checkpoint file, optional (Boolean). */
+    resume
   }
 }
@@ -1,10 +1,17 @@
 package polygonsSWP.generators.heuristics;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
 
 import polygonsSWP.data.History;
 import polygonsSWP.data.PolygonStatistics;
@@ -17,6 +24,10 @@ import polygonsSWP.geometry.OrderedListPolygon;
 import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
 import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
+import polygonsSWP.util.intersections.IntersectionMode;
+import polygonsSWP.util.intersections.IntersectionUtils;
+import polygonsSWP.util.intersections.LineSegmentIntersectionMode;
 
 /**
  * (c) 2011-2012
@@ -50,19 +61,90 @@ public class IncrementalConstructionAndBacktrackingFactory implements
 	    PolygonStatistics stats,
 			History steps) throws IllegalParameterizationException {
 		List<Point> points = GeneratorUtils.createOrUsePoints(params, true);
-		return new IncrementalConstructionAndBacktracking(points, steps, stats);
+		return new IncrementalConstructionAndBacktracking(points, this, steps,
+				stats);
+	}
+
+	/**
+	 * Table of the last point set, reused while the points do not change.
+	 * Only accessed while holding the lock.
+	 */
+	private Point[] crossingPoints;
+	private FutureTask<CrossingTable> crossings;
+
+	/**
+	 * Returns the crossing table of the points. The table is computed outside
+	 * of the lock, so generators for other point sets are not held up, while
+	 * generators for the same points wait for it instead of computing their
+	 * own copy.
+	 */
+	private CrossingTable getCrossingTable(final List<Point> points) {
+		FutureTask<CrossingTable> task;
+		boolean compute = false;
+		synchronized (this) {
+			if (crossings == null || !samePoints(crossingPoints, points)) {
+				crossingPoints = points.toArray(new Point[points.size()]);
+				crossings = new FutureTask<CrossingTable>(
+						new Callable<CrossingTable>() {
+							@Override
+							public CrossingTable call() {
+								return new CrossingTable(points);
+							}
+						});
+				compute = true;
+			}
+			task = crossings;
+		}
+
+		if (compute)
+			task.run();
+
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(
+					"IncrementalConstructionAndBacktrackingFactory/getCrossingTable: interrupted",
+					e);
+		} catch (ExecutionException e) {
+			// Do not keep the failed table.
+			synchronized (this) {
+				if (crossings == task)
+					crossings = null;
+			}
+			throw new RuntimeException(
+					"IncrementalConstructionAndBacktrackingFactory/getCrossingTable: "
+							+ e.getCause().getMessage(), e.getCause());
+		}
+	}
+
+	/**
+	 * @return true, if both contain the same points in the same order.
+	 */
+	private static boolean samePoints(Point[] a, List<Point> b) {
+		if (a.length != b.size())
+			return false;
+		for (int i = 0; i < a.length; i++) {
+			Point p = b.get(i);
+			if (p.x != a[i].x || p.y != a[i].y)
+				return false;
+		}
+		return true;
 	}
 
 	private static class IncrementalConstructionAndBacktracking implements
 			PolygonGenerator {
-		private boolean doStop;
+		private volatile boolean doStop;
 		private List<Point> points;
+		final private IncrementalConstructionAndBacktrackingFactory factory;
 		final private History steps;
 		final private PolygonStatistics statistics;
 		
 		IncrementalConstructionAndBacktracking(List<Point> points,
-		    History steps, PolygonStatistics statistics) {
+		    IncrementalConstructionAndBacktrackingFactory factory, History steps,
+		    PolygonStatistics statistics) {
 			this.points = points;
+			this.factory = factory;
 			this.steps = steps;
 			this.doStop = false;
 			this.statistics = statistics;
@@ -88,10 +170,11 @@ public class IncrementalConstructionAndBacktrackingFactory implements
 			// Precalculate the convex hull of points
 			OrderedListPolygon ch = GeneratorUtils.convexHull(points);
 
-			Random r = new Random(System.currentTimeMillis());
+			Random r = Random.create();
 
-			// Keep track of unusable edges
-			EdgeSet ue = new EdgeSet(points);
+			// Keep track of unusable edges. The table is only fetched now, so
+			// instances waiting to be generated do not hold one each.
+			EdgeSet ue = new EdgeSet(factory.getCrossingTable(points));
 
 			// Polygon (represented by indices relative to points list).
 			List<Integer> polygon = new ArrayList<Integer>();
@@ -139,7 +222,7 @@ public class IncrementalConstructionAndBacktrackingFactory implements
 			if (doStop)
 				return null;
 
-			Random r = new Random(System.currentTimeMillis());
+			Random r = Random.create();
 
 			// Remember used points (elements in 'remaining' list)
 			List<Integer> used = new ArrayList<Integer>();
@@ -181,8 +264,10 @@ public class IncrementalConstructionAndBacktrackingFactory implements
 				// **********************************
 				// Ok, this iteration: Use point idx.
 
-				// Clone everything for a fresh start
-				EdgeSet ue = unusable.clone();
+				// Start from the current state, which is restored below if
+				// this point does not lead to a polygon.
+				int state = unusable.state();
+				EdgeSet ue = unusable;
 				List<Integer> rem = new ArrayList<Integer>(remaining);
 				List<Integer> pp = new ArrayList<Integer>(chain);
 
@@ -248,6 +333,8 @@ public class IncrementalConstructionAndBacktrackingFactory implements
 								points);
 				}
 
+				if (polygon == null)
+					unusable.undo(state);
 			}
 
 			if (doStop)
@@ -301,133 +388,321 @@ public class IncrementalConstructionAndBacktrackingFactory implements
 			return true;
 		}
 
-		protected static class EdgeSet {
-			boolean s[][];
-			List<Point> v;
-
-			EdgeSet(List<Point> vertices) {
-				v = vertices;
-				s = new boolean[v.size()][v.size()];
-			}
+	} /* End of class IncrementalConstructionAndBacktracking */
 
-			protected EdgeSet(List<Point> vertices, boolean[][] set) {
-				v = vertices;
-				s = new boolean[v.size()][v.size()];
-				for (int i = 0; i < v.size() - 1; i++) {
-					for (int j = i + 1; j < v.size(); j++) {
-						s[i][j] = set[i][j];
-					}
+	/**
+	 * For each edge between two points, the set of edges it intersects
+	 * (ignoring shared endpoints), as used by rule 1. Edges are numbered
+	 * row by row in the upper triangle of the adjacency matrix, see
+	 * edge(). The intersection test is not exactly symmetric for
+	 * endpoints, so there is a row for each direction of an edge.
+	 * 
+	 * The table is computed once per point set, in parallel for large
+	 * sets on a pool shared by all tables. If it would get too large, the
+	 * rows are computed on demand instead.
+	 */
+	public static class CrossingTable {
+		/**
+		 * Maximum size of the table in longs: 1/64 of the heap, so several
+		 * generators can hold a table at once, and at most 16 MB.
+		 */
+		static final long MAX_TABLE_SIZE = Math.min(1L << 21,
+				Runtime.getRuntime().maxMemory() / 8 / 64);
+
+		/** Minimum number of edges to compute the table in parallel. */
+		static final int PARALLEL_THRESHOLD = 1024;
+
+		static final IntersectionMode EXCLUDE_END_POINTS =
+				new LineSegmentIntersectionMode(false);
+
+		final Point[] points;
+		final int size, edges, words;
+		final int[] from, to;
+		final long[][] rows;
+
+		public CrossingTable(List<Point> points) {
+			this.points = points.toArray(new Point[points.size()]);
+			size = points.size();
+			edges = size * (size - 1) / 2;
+			words = (edges + 63) >>> 6;
+
+			from = new int[edges];
+			to = new int[edges];
+			for (int i = 0, e = 0; i < size; i++) {
+				for (int j = i + 1; j < size; j++, e++) {
+					from[e] = i;
+					to[e] = j;
 				}
 			}
 
-			@Override
-			protected EdgeSet clone() {
-				return new EdgeSet(v, s);
+			if (2L * edges * words > MAX_TABLE_SIZE) {
+				rows = null;
+				return;
 			}
 
-			void markRule1(int i, int j) {
-				LineSegment ls = new LineSegment(v.get(i), v.get(j));
-				for (int m = 0; m < v.size() - 1; m++) {
-					for (int n = m + 1; n < v.size(); n++) {
+			rows = new long[2 * edges][];
+			int threads = edges < PARALLEL_THRESHOLD ? 1 :
+					Runtime.getRuntime().availableProcessors();
+			if (threads == 1) {
+				for (int r = 0; r < rows.length; r++)
+					rows[r] = computeRow(r);
+				return;
+			}
 
-						LineSegment ls2 = new LineSegment(v.get(m), v.get(n));
+			// The caller computes one share itself.
+			List<Future<?>> futures = new ArrayList<Future<?>>();
+			try {
+				for (int t = 1; t < threads; t++)
+					futures.add(pool().submit(computeRows(t, threads)));
+				computeRows(0, threads).run();
+				for (Future<?> future : futures)
+					future.get();
+			} catch (InterruptedException e) {
+				for (Future<?> future : futures)
+					future.cancel(true);
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("CrossingTable: interrupted", e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("CrossingTable: " + e.getMessage(),
+						e.getCause());
+			}
+		}
 
-						if (ls.intersect(ls2, true) != null) {
-							markEdge(m, n);
-						}
+		/** Threads computing tables, created on first use. */
+		private static ExecutorService pool;
+
+		private static synchronized ExecutorService pool() {
+			if (pool == null) {
+				pool = Executors.newFixedThreadPool(Runtime.getRuntime()
+						.availableProcessors(), new ThreadFactory() {
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "CrossingTable");
+						t.setDaemon(true);
+						return t;
 					}
-				}
+				});
 			}
+			return pool;
+		}
 
-			void markRule2(int i, List<Integer> points) {
-				// Furthermore, if a point is adjacent
-				// to two other points that both have only two incident
-				// unmarked edges, we mark all the other edges incident
-				// upon that point.
+		/**
+		 * Computes every step-th row, starting at first.
+		 */
+		private Runnable computeRows(final int first, final int step) {
+			return new Runnable() {
+				@Override
+				public void run() {
+					for (int r = first; r < rows.length; r += step)
+						rows[r] = computeRow(r);
+				}
+			};
+		}
 
-				int[] n = new int[2];
-				int count = 0;
+		/**
+		 * @return the number of edge (i, j)
+		 */
+		public int edge(int i, int j) {
+			if (i > j) {
+				int tmp = i;
+				i = j;
+				j = tmp;
+			}
+			return i * (2 * size - i - 1) / 2 + (j - i - 1);
+		}
 
-				// Iterate through all neighbors j of point i
-				for (Integer j : points) {
-					if (i != j && !isMarked(i, j)) {
+		/**
+		 * @return the edges intersecting the edge from i to j, must not be
+		 *         modified.
+		 */
+		public long[] row(int i, int j) {
+			int r = 2 * edge(i, j) + (i < j ? 0 : 1);
+			return rows != null ? rows[r] : computeRow(r);
+		}
 
-						// Has only two incident unmarked edges?
-						if (degree(j) == 2) {
-							count++;
+		/**
+		 * Same test as LineSegment.intersect(ls, true) != null, except that
+		 * edges sharing an endpoint only intersect if they are collinear.
+		 * Rounding sometimes puts the intersection of such edges just inside
+		 * both of them, which would mark the edge continuing the chain.
+		 */
+		private long[] computeRow(int r) {
+			long[] row = new long[words];
+			int e = r / 2;
+			int i = r % 2 == 0 ? from[e] : to[e];
+			int j = r % 2 == 0 ? to[e] : from[e];
+
+			for (int f = 0; f < edges; f++) {
+				Point[] is = IntersectionUtils.intersect(points[i], points[j],
+						points[from[f]], points[to[f]], EXCLUDE_END_POINTS,
+						EXCLUDE_END_POINTS);
+				if (is == null)
+					continue;
+				if (is.length > 0 && (from[f] == i || from[f] == j
+						|| to[f] == i || to[f] == j))
+					continue;
+				row[f >>> 6] |= 1L << f;
+			}
+			return row;
+		}
+	} /* End of class CrossingTable */
+
+	/**
+	 * Marked (unusable) edges as a bitset over the edges of a
+	 * CrossingTable, together with the number of unmarked edges of each
+	 * point.
+	 * 
+	 * Instead of copying the set for each recursion level, marked edges
+	 * are recorded on a trail, so undo() can unmark them when
+	 * backtracking.
+	 */
+	public static class EdgeSet {
+		final CrossingTable crossings;
+		final int size;
+		final long[] marked;
+		final int[] degrees;
+
+		/* Edges in the order they were marked. */
+		int[] trail;
+		int trailSize = 0;
+
+		public EdgeSet(CrossingTable crossings) {
+			this.crossings = crossings;
+			size = crossings.size;
+			marked = new long[crossings.words];
+			degrees = new int[size];
+			Arrays.fill(degrees, size - 1);
+			trail = new int[Math.max(16, size)];
+		}
 
-							// TODO Fail here.
-							assert (count < 3);
-							n[count - 1] = j;
-						}
-					}
-				}
+		/**
+		 * @return the current state, see undo()
+		 */
+		public int state() {
+			return trailSize;
+		}
 
-				// Mark all edges apart from those leading to n[0] & n[1].
-				if (count == 2) {
-					for (int j = 0; j < v.size(); j++) {
-						if (j != i && j != n[0] && j != n[1])
-							markEdge(i, j);
-					}
-				}
+		/**
+		 * Unmarks all edges marked since state() returned the given state.
+		 */
+		public void undo(int state) {
+			while (trailSize > state) {
+				int e = trail[--trailSize];
+				marked[e >>> 6] &= ~(1L << e);
+				degrees[crossings.from[e]]++;
+				degrees[crossings.to[e]]++;
 			}
+		}
 
-			protected boolean condition1(List<Integer> rem) {
-				// Each point that does not yet belong to the polygo-
-				// nal chain under construction has at least two inci-
-				// dent unmarked edges.
-				for (Integer point : rem) {
-					if (degree(point) < 2)
-						return false;
-				}
+		public void markRule1(int i, int j) {
+			long[] row = crossings.row(i, j);
+			for (int w = 0; w < row.length; w++) {
+				long added = row[w] & ~marked[w];
+				marked[w] |= added;
 
-				return true;
+				for (; added != 0; added &= added - 1)
+					marked((w << 6) + Long.numberOfTrailingZeros(added));
 			}
+		}
+
+		public void markRule2(int i, List<Integer> points) {
+			// Furthermore, if a point is adjacent
+			// to two other points that both have only two incident
+			// unmarked edges, we mark all the other edges incident
+			// upon that point.
 
-			protected boolean condition2(int np) {
-				// At most one point adjacent to the point last added
-				// has only two incident unmarked edges.
-				// Iterate through all points adjacent to np.
+			int[] n = new int[2];
+			int count = 0;
 
-				int count = 0;
-				for (int i = 0; i < v.size(); i++) {
-					if (i != np && !isMarked(i, np)) {
+			// Iterate through all neighbors j of point i
+			for (Integer j : points) {
+				if (i != j && !isMarked(i, j)) {
 
-						// If only two unmarked edges
-						if (degree(i) <= 2)
-							count++;
+					// Has only two incident unmarked edges?
+					if (degree(j) == 2) {
+						count++;
+
+						// TODO Fail here.
+						assert (count < 3);
+						n[count - 1] = j;
 					}
 				}
+			}
 
-				return count <= 1;
+			// Mark all edges apart from those leading to n[0] & n[1].
+			if (count == 2) {
+				for (int j = 0; j < size; j++) {
+					if (j != i && j != n[0] && j != n[1])
+						markEdge(i, j);
+				}
 			}
+		}
 
-			protected boolean isMarked(int i, int j) {
-				assert (i != j);
-				return (i < j) ? s[i][j] : s[j][i];
+		protected boolean condition1(List<Integer> rem) {
+			// Each point that does not yet belong to the polygo-
+			// nal chain under construction has at least two inci-
+			// dent unmarked edges.
+			for (Integer point : rem) {
+				if (degree(point) < 2)
+					return false;
 			}
 
-			/**
-			 * @param i
-			 *            index of point
-			 * @return number of unmarked edges
-			 */
-			protected int degree(int i) {
-				int count = 0;
-				for (int j = 0; j < v.size(); j++) {
-					if (i != j && !isMarked(i, j))
+			return true;
+		}
+
+		protected boolean condition2(int np) {
+			// At most one point adjacent to the point last added
+			// has only two incident unmarked edges.
+			// Iterate through all points adjacent to np.
+
+			int count = 0;
+			for (int i = 0; i < size; i++) {
+				if (i != np && !isMarked(i, np)) {
+
+					// If only two unmarked edges
+					if (degree(i) <= 2)
 						count++;
 				}
-				return count;
 			}
 
-			protected void markEdge(int i, int j) {
-				assert (i != j);
-				if (i < j)
-					s[i][j] = true;
-				else
-					s[j][i] = true;
-			}
-		} /* End of class EdgeSet */
-	} /* End of class IncrementalConstructionAndBacktracking */
+			return count <= 1;
+		}
+
+		public boolean isMarked(int i, int j) {
+			assert (i != j);
+			int e = crossings.edge(i, j);
+			return (marked[e >>> 6] & (1L << e)) != 0;
+		}
+
+		/**
+		 * @param i
+		 *            index of point
+		 * @return number of unmarked edges
+		 */
+		public int degree(int i) {
+			return degrees[i];
+		}
+
+		public void markEdge(int i, int j) {
+			assert (i != j);
+			int e = crossings.edge(i, j);
+			if ((marked[e >>> 6] & (1L << e)) != 0)
+				return;
+
+			marked[e >>> 6] |= 1L << e;
+			marked(e);
+		}
+
+		/**
+		 * Updates degrees and trail for newly marked edge e.
+		 */
+		private void marked(int e) {
+			degrees[crossings.from[e]]--;
+			degrees[crossings.to[e]]--;
+
+			if (trailSize == trail.length)
+				trail = Arrays.copyOf(trail, 2 * trail.length);
+			trail[trailSize++] = e;
+		}
+	} /* End of class EdgeSet */
 }
@@ -5,6 +5,13 @@ import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
 import polygonsSWP.util.Random;
 
 import polygonsSWP.generators.IllegalParameterizationException;
@@ -56,18 +63,51 @@ public class SpacePartitioningFactory
 
     List<Point> points = GeneratorUtils.createOrUsePoints(params);
 
-    return new SpacePartitioning(points, steps);
+    Integer threads = (Integer) params.get(Parameters.threads);
+    if (threads == null) threads = 1;
+    if (threads < 1) throw new IllegalParameterizationException("Number of threads must be positive.", Parameters.threads);
+
+    return new SpacePartitioning(points, threads, steps);
   }
 
 
+  /**
+   * The points are kept in one coordinate array, which every subproblem
+   * partitions in place like quicksort: the points of the first subproblem,
+   * the end point of the middle line, the points of the second subproblem.
+   * So once the recursion is done, the array holds the polygon chain and
+   * no lists or polygons are created per level (except for the history).
+   *
+   * Every subproblem draws its random numbers from its own seed, which is
+   * derived from the seed of its parent (see Random.seedFor()). So the
+   * polygon does not depend on the order the subproblems are solved in.
+   * With more than one thread (and no history), subproblems of at least
+   * PARALLEL_THRESHOLD points are handed to a thread pool, which yields
+   * the same polygon as the sequential recursion.
+   */
   private static class SpacePartitioning
     implements PolygonGenerator
   {
+    /** Minimum number of points of a subproblem to solve it in parallel. */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+    private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
     private Random rand = Random.create();
 
     private List<Point> points;
+    private final int threads;
     private final History steps;
-    private boolean doStop = false;
+    private volatile boolean doStop = false;
+    /* Thread pool of the parallel recursion, null if sequential. */
+    private ExecutorService executor;
+
+    /*
+     * Coordinates of the points (x and y interleaved) and their indices in
+     * input, both partitioned in place.
+     */
+    private double[] xy;
+    private int[] ids;
+    private Point[] input;
 
     /**
      * colors
@@ -81,8 +121,9 @@ public class SpacePartitioningFactory
     private Color LEFT_POLYGON = Color.GRAY;
     private Color RIGHT_POLYGON = Color.LIGHT_GRAY;
 
-    SpacePartitioning(List<Point> points, History steps) {
+    SpacePartitioning(List<Point> points, int threads, History steps) {
       this.points = points;
+      this.threads = threads;
       this.steps = steps;
     }
 
@@ -109,6 +150,10 @@ public class SpacePartitioningFactory
         steps.clear();
       }
 
+      // The calling thread works, too.
+      if (threads > 1 && steps == null)
+        executor = Executors.newFixedThreadPool(threads - 1);
+
       Polygon p = null;
       try {
         p = generate0();
@@ -117,6 +162,15 @@ public class SpacePartitioningFactory
         e.printStackTrace();
       }
       catch (InterruptedException e) {}
+      finally {
+        if (executor != null) {
+          executor.shutdownNow();
+          executor = null;
+        }
+        xy = null;
+        ids = null;
+        input = null;
+      }
 
       /**
        * VISUALISATION
@@ -132,13 +186,26 @@ public class SpacePartitioningFactory
       throws InterruptedException {
       Scene scene = null;
 
-      Point first = GeneratorUtils.removeRandomPoint(points),
-             last = GeneratorUtils.removeRandomPoint(points);
+      int n = points.size();
+      input = points.toArray(new Point[n]);
+      xy = new double[2 * n];
+      ids = new int[n];
+      for (int i = 0; i < n; i++) {
+        xy[2 * i] = input[i].x;
+        xy[2 * i + 1] = input[i].y;
+        ids[i] = i;
+      }
 
-      List<Point> left = new ArrayList<Point>(points.size()), right =
-          new ArrayList<Point>(points.size());
+      // first, left points, last, right points
+      swap(0, rand.nextInt(n));
+      swap(n - 1, 1 + rand.nextInt(n - 1));
+      double fx = xy[0], fy = xy[1],
+             lx = xy[2 * (n - 1)], ly = xy[2 * (n - 1) + 1];
 
-      partionateIn(left, right, points, first, last);
+      int mid = partition(1, n - 1, fx, fy, lx, ly, true);
+      swap(mid, n - 1);
+
+      Point first = input[ids[0]], last = input[ids[mid]];
 
       /**
        * VISUALISATION
@@ -148,138 +215,197 @@ public class SpacePartitioningFactory
         .addPoint(first, true)
         .addPoint(last, true)
         .addLine(new Line(first, last), true)
-        .addPoints(left, LEFT_POINTS)
-        .addPoints(right, RIGHT_POINTS)
+        .addPoints(points(1, mid), LEFT_POINTS)
+        .addPoints(points(mid + 1, n), RIGHT_POINTS)
         .save();
       }
 
-      OrderedListPolygon leftPolygon, rightPolygon;
+      long seed = rand.nextLong();
 
       if( steps != null) {
         scene = newScene(null).addLine(new Line(first, last), true);
       }
 
-      leftPolygon = spacePartitioning(left, first, last, scene);
+      Future<?> leftTask =
+          fork(1, mid, fx, fy, lx, ly, Random.seedFor(seed, 0));
+      if (leftTask == null)
+        spacePartitioning(1, mid, fx, fy, lx, ly, scene,
+            Random.seedFor(seed, 0));
 
       if( steps != null) {
-        scene = newScene(leftPolygon).addLine(new Line(first, last), true);
+        scene = newScene(chain(0, mid + 1)).addLine(new Line(first, last), true);
       }
 
-      rightPolygon = spacePartitioning(right, last, first, scene);
+      spacePartitioning(mid + 1, n, lx, ly, fx, fy, scene,
+          Random.seedFor(seed, 1));
+      if (leftTask != null) join(leftTask);
+
+      OrderedListPolygon polygon = chain(0, n);
 
       /**
        * VISUALISATION
        */
       if( steps != null ) {
+        List<Point> rightChain = points(mid, n);
+        rightChain.add(first);
+
         newScene(null)
         .addPoint(first, true)
         .addPoint(last, true)
         .addLine(new Line(first, last), true)
-        .addPolygon(leftPolygon, LEFT_POLYGON)
-        .addPolygon(rightPolygon, RIGHT_POLYGON)
-        .addPoints(left, LEFT_POINTS)
-        .addPoints(right, RIGHT_POINTS)
+        .addPolygon(chain(0, mid + 1), LEFT_POLYGON)
+        .addPolygon(new OrderedListPolygon(rightChain), RIGHT_POLYGON)
+        .addPoints(points(1, mid), LEFT_POINTS)
+        .addPoints(points(mid + 1, n), RIGHT_POINTS)
         .save();
       }
 
-      return merge(leftPolygon, rightPolygon);
+      return polygon;
     }
 
-    private void removeDuplicates(Polygon left, Polygon right) {
-      List<Point> leftPoints = left.getPoints(), rightPoints =
-          right.getPoints();
-
-      assert leftPoints.size() > 0 && rightPoints.size() > 0;
-
-      // on borders can be duplicated elements, we must remove them
-      if (rightPoints.get(0).equals(leftPoints.get(leftPoints.size() - 1))) {
-        rightPoints.remove(0);
+    /**
+     * Moves the points of [from, to) for which (the orientation to the line
+     * through (bx, by) and (ex, ey) is -1) == left to the front.
+     *
+     * @return the index of the first point of the other ones.
+     */
+    private int partition(int from, int to, double bx, double by, double ex,
+        double ey, boolean left) {
+      int i = from, j = to - 1;
+      while (true) {
+        while (i <= j && (MathUtils.checkOrientation(bx, by, ex, ey,
+            xy[2 * i], xy[2 * i + 1]) < 0) == left)
+          i++;
+        while (i <= j && (MathUtils.checkOrientation(bx, by, ex, ey,
+            xy[2 * j], xy[2 * j + 1]) < 0) != left)
+          j--;
+        if (i >= j) return i;
+        swap(i++, j--);
       }
+    }
 
-      assert leftPoints.size() > 0 && rightPoints.size() > 0;
+    private void swap(int i, int j) {
+      double x = xy[2 * i], y = xy[2 * i + 1];
+      xy[2 * i] = xy[2 * j];
+      xy[2 * i + 1] = xy[2 * j + 1];
+      xy[2 * j] = x;
+      xy[2 * j + 1] = y;
 
-      if (leftPoints.get(0).equals(rightPoints.get(rightPoints.size() - 1))) {
-        leftPoints.remove(0);
-      }
+      int id = ids[i];
+      ids[i] = ids[j];
+      ids[j] = id;
     }
 
-    private void partionateIn(List<Point> left, List<Point> right,
-        List<Point> points, Point first, Point last)
-      throws InterruptedException {
-
-      if (doStop) throw new InterruptedException();
+    /**
+     * @return the points of [from, to) in their current order.
+     */
+    private List<Point> points(int from, int to) {
+      List<Point> list = new ArrayList<Point>(Math.max(0, to - from) + 1);
+      for (int i = from; i < to; i++)
+        list.add(input[ids[i]]);
+      return list;
+    }
 
-      for (Point point : points) {
+    /**
+     * @return the chain of the points of [from, to).
+     */
+    private OrderedListPolygon chain(int from, int to) {
+      return new OrderedListPolygon(points(from, to));
+    }
 
-        int orients = MathUtils.checkOrientation(first, last, point);
-        if (orients < 0) { // on left-side
-          left.add(point);
-        }
-        else {
-          right.add(point);
+    /**
+     * Hands the subproblem to the thread pool if it is large enough, see
+     * join().
+     *
+     * @return the task, null if the subproblem should be solved right away.
+     */
+    private Future<?> fork(final int from, final int to, final double fx,
+        final double fy, final double lx, final double ly, final long seed) {
+      if (executor == null || to - from < PARALLEL_THRESHOLD) return null;
+
+      FutureTask<Void> task = new FutureTask<Void>(new Callable<Void>() {
+        @Override
+        public Void call() throws InterruptedException {
+          spacePartitioning(from, to, fx, fy, lx, ly, null, seed);
+          return null;
         }
+      });
+      executor.execute(task);
+      return task;
+    }
 
+    /**
+     * Waits for a forked subproblem. If no thread of the pool has started
+     * it yet, the calling thread solves it, so waiting threads never block
+     * the pool.
+     */
+    private void join(Future<?> task)
+      throws InterruptedException {
+      ((FutureTask<?>) task).run();
+      try {
+        task.get();
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof InterruptedException)
+          throw (InterruptedException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new RuntimeException("SpacePartitioning: " + cause, cause);
       }
     }
 
-    private OrderedListPolygon merge(OrderedListPolygon left,
-        OrderedListPolygon right) {
-      removeDuplicates(left, right);
-
-      left.getPoints().addAll(right.getPoints());
-      return left;
+    /**
+     * @return the index-th uniform random number in [0, 1) of the
+     *         subproblem with the given seed.
+     */
+    private static double nextDouble(long seed, int index) {
+      return (Random.seedFor(seed, index) >>> 11) * DOUBLE_UNIT;
     }
 
-    private OrderedListPolygon spacePartitioning(List<Point> points,
-        Point first, Point last, Scene leftScene)
+    /**
+     * Orders the points of [from, to) to a chain from (fx, fy) to (lx, ly),
+     * which lie right before and after the range.
+     */
+    private void spacePartitioning(int from, int to, double fx, double fy,
+        double lx, double ly, Scene leftScene, long seed)
       throws InterruptedException {
       Scene oldScene = leftScene;
 
       if (doStop) throw new InterruptedException();
 
-      OrderedListPolygon polygon = null;
-
-      // base size == 0
-      if (points.size() == 0) {
-        ArrayList<Point> list = new ArrayList<Point>();
-        list.add(first);
-        list.add(last);
-
-        polygon = new OrderedListPolygon(list);
-
-        return polygon;
-      }
+      // base size == 0 or 1: first, (point,) last
+      if (to - from <= 1) return;
 
-      // base size == 1
-      if (points.size() == 1) {
-        ArrayList<Point> list = new ArrayList<Point>();
-        list.add(first);
-        list.add(points.get(0));
-        list.add(last);
+      // endMiddle to the end of the range for now
+      swap(from + (int) (nextDouble(seed, 0) * (to - from)), to - 1);
+      double ex = xy[2 * (to - 1)], ey = xy[2 * (to - 1) + 1];
 
-        polygon = new OrderedListPolygon(list);
-
-        return polygon;
-      }
-
-      Point endMiddle = GeneratorUtils.removeRandomPoint(points),
-            startMiddle = new LineSegment(first, last)
-              .getPointOnLineSegment(rand.nextDouble());
-
-      List<Point> left = new ArrayList<Point>(points.size()), right =
-          new ArrayList<Point>(points.size());
-
-      partionateIn(left, right, points, startMiddle, endMiddle);
+      double factor = nextDouble(seed, 1);
+      double sx = factor * (fx - lx) + lx, sy = factor * (fy - ly) + ly;
 
       boolean onLeftSide =
-          MathUtils.checkOrientation(first, last, endMiddle) == -1;
+          MathUtils.checkOrientation(fx, fy, lx, ly, ex, ey) == -1;
+
+      // points of the left side of the polygon (first .. endMiddle), then
+      // endMiddle, then the points of the right side (endMiddle .. last)
+      int mid = partition(from, to - 1, sx, sy, ex, ey, onLeftSide);
+      swap(mid, to - 1);
 
-      OrderedListPolygon leftPolygon, rightPolygon;
+      Point first = null, last = null, startMiddle = null, endMiddle = null;
+      List<Point> left = null, right = null;
 
       /**
        * VISUALISATION
        */
       if( steps != null ) {
+        first = new Point(fx, fy);
+        last = new Point(lx, ly);
+        startMiddle = new Point(sx, sy);
+        endMiddle = input[ids[mid]];
+        left = onLeftSide ? points(from, mid) : points(mid + 1, to);
+        right = onLeftSide ? points(mid + 1, to) : points(from, mid);
+
         newScene(null)
         .mergeScene(oldScene)
         .addPoint(first, true)
@@ -297,13 +423,20 @@ public class SpacePartitioningFactory
         .mergeScene(leftScene);
       }
 
-      // compute left side of polygon
-      leftPolygon = spacePartitioning(onLeftSide ? left : right, first, endMiddle, leftScene);
+      // compute left side of polygon, possibly in parallel to the right one
+      Future<?> leftTask =
+          fork(from, mid, fx, fy, ex, ey, Random.seedFor(seed, 2));
+      if (leftTask == null)
+        spacePartitioning(from, mid, fx, fy, ex, ey, leftScene,
+            Random.seedFor(seed, 2));
 
       /**
        * VISUALISATION
        */
       if( steps != null ) {
+        OrderedListPolygon leftPolygon = chain(from, mid + 1);
+        leftPolygon.getPoints().add(0, first);
+
         newScene(leftPolygon, LEFT_POLYGON)
         .mergeScene(leftScene)
         .addPoint(first, true)
@@ -320,12 +453,17 @@ public class SpacePartitioningFactory
         .mergeScene(leftScene);
       }
 
-      rightPolygon = spacePartitioning(onLeftSide ? right : left, endMiddle, last, leftScene);
+      spacePartitioning(mid + 1, to, ex, ey, lx, ly, leftScene,
+          Random.seedFor(seed, 3));
+      if (leftTask != null) join(leftTask);
 
       /**
        * VISUALISATION
        */
       if( steps != null ) {
+        OrderedListPolygon rightPolygon = chain(mid, to);
+        rightPolygon.getPoints().add(last);
+
         newScene(null)
         .mergeScene(leftScene)
         .addPoint(first, true)
@@ -339,15 +477,10 @@ public class SpacePartitioningFactory
         .addPoints(right, RIGHT_POINTS)
         .save();
 
-        points.add(endMiddle);
-      }
-
-      OrderedListPolygon merge = merge(leftPolygon, rightPolygon);
+        OrderedListPolygon merge = chain(from, to);
+        merge.getPoints().add(0, first);
+        merge.getPoints().add(last);
 
-      /**
-       * VISUALISATION
-       */
-      if( steps != null ) {
         newScene(null)
         .mergeScene(oldScene)
         .addPoint(first, true)
@@ -361,8 +494,6 @@ public class SpacePartitioningFactory
         .addPoints(right, RIGHT_POINTS)
         .save();
       }
-
-      return merge;
     }
 
     @Override
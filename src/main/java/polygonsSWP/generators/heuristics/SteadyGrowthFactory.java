@@ -2,11 +2,10 @@ package polygonsSWP.generators.heuristics;
 
 import java.awt.Color;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.NoSuchElementException;
 
 import polygonsSWP.generators.IllegalParameterizationException;
 import polygonsSWP.generators.PolygonGenerator;
@@ -68,9 +67,9 @@ public class SteadyGrowthFactory
 
     private ArrayList<Point> points;
     final private History steps;
-    private boolean doStop = false;
+    private volatile boolean doStop = false;
     private PolygonStatistics stats = null;
-    private Random rand = new Random();
+    private Random rand = Random.create();
 
     private int initializeRejections = 0;
     private int maximumRejections = 0;
@@ -90,6 +89,13 @@ public class SteadyGrowthFactory
     private final Color NEW_EDGE_POINT = Color.GREEN;
 //    private final Color VALID_HULL = Color.GREEN;
 
+    /* Buffers of the angular sweep, see findVisibleCandidates(). */
+    private long[] sweepOrder = new long[0];
+    private int[] sweepRank = new int[0];
+    private int[] activeEdges = new int[0];
+    private int[] activePositions = new int[0];
+    private boolean[] visibleCandidates = new boolean[0];
+
     public SteadyGrowth(List<Point> points, History steps,
         PolygonStatistics stats) {
       this.points = new ArrayList<Point>(points);
@@ -109,19 +115,92 @@ public class SteadyGrowthFactory
       return scene.addPolygon(polygon, color);
     }
 
-    private class BlackList implements Iterable<Point>{
+    /**
+     * The points not yet added to the polygon. While looking for the next
+     * point, only the points inside the triangles of all rejected candidates
+     * remain candidates (see blacklistOutside()), the others are blacklisted
+     * until reset().
+     *
+     * The points are kept in a uniform grid, so the first triangle of a round
+     * only has to look at the cells below it instead of at all points. Its
+     * candidates are then listed explicitly, and later triangles only test
+     * those. nextRandom() chooses uniformly among the candidates, as before.
+     */
+    private class BlackList {
+      /** Number of candidates. */
       public int size;
-      public ArrayList<Point> points;
 
-      private Random rand = new Random();
+      private final Point[] points;
+
+      /* Ids of the points not yet added, and their positions in there. */
+      private final int[] remaining;
+      private final int[] remainingPositions;
+      private int remainingCount;
+
+      /* The candidates, if filtered; all remaining points otherwise. The last
+         chosen point (current) is never a candidate. */
+      private boolean filtered;
+      private int[] candidates;
+      private int current = -1;
+
+      private final double minX, minY, cellWidth, cellHeight;
+      private final int cols, rows;
+      private final int[][] cells;
+      private final int[] cellSizes;
+
+      private Random rand = Random.create();
+
+      public BlackList(List<Point> points){
+        int n = points.size();
+        this.points = points.toArray(new Point[n]);
+        remaining = new int[n];
+        remainingPositions = new int[n];
+        candidates = new int[n];
+        remainingCount = n;
+
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        for (Point p : points) {
+          minX = Math.min(minX, p.x);
+          minY = Math.min(minY, p.y);
+          maxX = Math.max(maxX, p.x);
+          maxY = Math.max(maxY, p.y);
+        }
+
+        // about two points per cell
+        cols = rows = Math.max(1, (int) Math.ceil(Math.sqrt(n / 2.0)));
+        this.minX = n > 0 ? minX : 0;
+        this.minY = n > 0 ? minY : 0;
+        cellWidth = n > 0 && maxX > minX ? (maxX - minX) / cols : 1;
+        cellHeight = n > 0 && maxY > minY ? (maxY - minY) / rows : 1;
+        cells = new int[cols * rows][];
+        cellSizes = new int[cols * rows];
+
+        for (int id = 0; id < n; id++) {
+          remaining[id] = remainingPositions[id] = id;
+
+          int cell = cell(this.points[id]);
+          int[] list = cells[cell];
+          if (list == null) list = cells[cell] = new int[4];
+          else if (cellSizes[cell] == list.length)
+            list = cells[cell] = Arrays.copyOf(list, 2 * list.length);
+          list[cellSizes[cell]++] = id;
+        }
 
-      public BlackList(ArrayList<Point> points){
-        this.points = points;
         reset();
       }
 
+      /**
+       * @return the number of points not yet added.
+       */
+      public int remaining(){
+        return remainingCount;
+      }
+
       public void reset(){
-        size = points.size();
+        filtered = false;
+        current = -1;
+        size = remainingCount;
       }
 
       public Point nextRandomAndRemove(){
@@ -129,67 +208,153 @@ public class SteadyGrowthFactory
         return remove();
       }
 
+      /**
+       * Chooses one of the candidates, which is no candidate any more.
+       */
       public Point nextRandom(){
+        if (!filtered && current >= 0) collectCandidates(null);
+
         int nextIndex = rand.nextInt(size);
+        if (filtered) {
+          current = candidates[nextIndex];
+          candidates[nextIndex] = candidates[--size];
+        }
+        else {
+          current = remaining[nextIndex];
+          size--;
+        }
+
+        return points[current];
+      }
 
-        swap(nextIndex, size - 1);
-        swap(points.size() - 1, size - 1);
-        size--;
+      /**
+       * Blacklists all candidates outside of the triangle (in case of null,
+       * no candidates).
+       */
+      public void blacklistOutside(Triangle triangle){
+        if (triangle == null) return;
 
-        return points.get(points.size() - 1);
+        if (!filtered) {
+          collectCandidates(triangle);
+          return;
+        }
+
+        int count = 0;
+        for (int k = 0; k < size; k++)
+          if (triangle.containsPoint(points[candidates[k]], true))
+            candidates[count++] = candidates[k];
+        size = count;
       }
 
-      private void blacklist(int index) {
-        swap(index, size - 1);
-        swap(points.size() - 2, size - 1);
-        size--;
+      /**
+       * Lists all remaining points except current as candidates, if they lie
+       * inside the triangle (if not null).
+       */
+      private void collectCandidates(Triangle triangle){
+        size = 0;
+        filtered = true;
+
+        if (triangle == null) {
+          for (int k = 0; k < remainingCount; k++)
+            if (remaining[k] != current) candidates[size++] = remaining[k];
+          return;
+        }
+
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        for (Point p : triangle.getPoints()) {
+          minX = Math.min(minX, p.x);
+          minY = Math.min(minY, p.y);
+          maxX = Math.max(maxX, p.x);
+          maxY = Math.max(maxY, p.y);
+        }
+
+        // widened, as containsPoint() accepts points on the edges
+        double margin = MathUtils.EPSILON;
+        int c0 = col(minX - margin), c1 = col(maxX + margin);
+        int r0 = row(minY - margin), r1 = row(maxY + margin);
+
+        for (int r = r0; r <= r1; r++) {
+          for (int c = c0; c <= c1; c++) {
+            int cell = r * cols + c;
+            int[] list = cells[cell];
+            for (int k = 0; k < cellSizes[cell]; k++) {
+              int id = list[k];
+              if (id != current && triangle.containsPoint(points[id], true))
+                candidates[size++] = id;
+            }
+          }
+        }
       }
 
       public List<Point> avaiblePoints(){
         if(size <= 0) return null;
 
-        return points.subList(0 , size);
+        List<Point> available = new ArrayList<Point>(size);
+        if (filtered)
+          for (int k = 0; k < size; k++)
+            available.add(points[candidates[k]]);
+        else
+          for (int k = 0; k < remainingCount; k++)
+            if (remaining[k] != current) available.add(points[remaining[k]]);
+        return available;
       }
 
       public List<Point> blacklistedPoints(){
-        if(size >= points.size()) return null;
-
-        return points.subList(size , points.size());
-      }
+        boolean[] isCandidate = new boolean[points.length];
+        for (int k = 0; k < size && filtered; k++)
+          isCandidate[candidates[k]] = true;
+
+        List<Point> blacklisted = new ArrayList<Point>();
+        for (int k = 0; k < remainingCount && filtered; k++) {
+          int id = remaining[k];
+          if (!isCandidate[id] && id != current) blacklisted.add(points[id]);
+        }
 
-      public void swap(int i, int j){
-        points.set(j, points.set(i, points.get(j)));
+        return blacklisted.isEmpty() ? null : blacklisted;
       }
 
+      /**
+       * Removes the last chosen point from the remaining points.
+       */
       public Point remove(){
-        Point a = points.remove(points.size() - 1);
-        return a;
-      }
+        int id = current;
+        current = -1;
+
+        int pos = remainingPositions[id], last = remaining[--remainingCount];
+        remaining[pos] = last;
+        remainingPositions[last] = pos;
+
+        int cell = cell(points[id]);
+        int[] list = cells[cell];
+        for (int k = 0; k < cellSizes[cell]; k++) {
+          if (list[k] == id) {
+            list[k] = list[--cellSizes[cell]];
+            break;
+          }
+        }
 
-      @Override
-      public Iterator<Point> iterator() {
-        return new Iterator<Point>() {
-          public int curr = -1;
+        if (!filtered) size = remainingCount;
+        return points[id];
+      }
 
-          @Override
-          public boolean hasNext() {
-            return size > 0 && curr < size - 1;
-          }
+      private int cell(Point p){
+        return row(p.y) * cols + col(p.x);
+      }
 
-          @Override
-          public Point next() {
-            if(!hasNext()) throw new NoSuchElementException();
-            Point a = points.get(++curr);
-            return a;
-          }
+      private int col(double x){
+        return clampIndex(Math.floor((x - minX) / cellWidth), cols);
+      }
 
-          @Override
-          public void remove() {
-            blacklist(curr--);
-          }
-        };
+      private int row(double y){
+        return clampIndex(Math.floor((y - minY) / cellHeight), rows);
       }
 
+      private int clampIndex(double i, int n){
+        if (!(i >= 0)) return 0;
+        if (i >= n) return n - 1;
+        return (int) i;
+      }
     }
 
     @Override
@@ -240,20 +405,19 @@ public class SteadyGrowthFactory
     private Object[] getNextPointAndHull(
         List<Point> polygon, SteadyGrowthConvexHull hull, BlackList blacklist) {
 
-      SteadyGrowthConvexHull copy = (SteadyGrowthConvexHull) hull.clone();
-
       int rejected = 0;
       Point randomPoint = null;
 
       while(blacklist.size > 0){
-        hull = copy;
-        copy = (SteadyGrowthConvexHull) hull.clone();
+        // every candidate is tried on the hull as it was before
+        if(randomPoint != null) hull.undo();
+        Polygon copy = steps != null ? hull.clone() : null;
 
         randomPoint = blacklist.nextRandom();
 
         int insertIndex = hull.addPointReturnAndInsertIndex(randomPoint);
         Triangle triangle = constructTriangle(hull, insertIndex);
-        blacklistPoints(triangle, blacklist);
+        blacklist.blacklistOutside(triangle);
 
         /**
          * VISUALISATION
@@ -290,7 +454,7 @@ public class SteadyGrowthFactory
       ArrayList<Point> polygon = new ArrayList<Point>(points.size());
       polygon.addAll(hull.getPoints());
 
-      while (points.size() > 0) {
+      while (blacklist.remaining() > 0) {
         if (doStop) throw new InterruptedException();
 
         runs++;
@@ -346,6 +510,7 @@ public class SteadyGrowthFactory
 
     private int getIndexOfVisibleEdge(ArrayList<Point> points, Point a, int start) {
       OrderedListPolygon polygon = new OrderedListPolygon(points);
+      boolean[] candidates = findVisibleCandidates(points, a);
 
       Point base;
       boolean lastVisible = false, visible = false;
@@ -355,7 +520,8 @@ public class SteadyGrowthFactory
         lastVisible = visible;
 
         base = points.get(i);
-        visible = GeneratorUtils.isPolygonVertexVisible(base, a, polygon);
+        visible = candidates[i] &&
+            GeneratorUtils.isPolygonVertexVisible(base, a, polygon);
 
         if (!lastVisible || !visible) continue;
         return i;
@@ -365,6 +531,123 @@ public class SteadyGrowthFactory
       throw new RuntimeException("steady-growth: should not happen");
     }
 
+    /**
+     * Angular sweep around a over the vertices of the polygon, which finds
+     * the vertices hidden by an edge crossing the line of sight. This only
+     * counts clear crossings, which isPolygonVertexVisible() finds as well,
+     * so it never hides a visible vertex. The remaining candidates have to be
+     * checked by isPolygonVertexVisible(), usually only a few.
+     *
+     * The edges crossing the current ray are kept in an unordered list, as
+     * only few edges cross a ray. As a lies outside of the convex hull of
+     * the polygon, the vertices lie within less than a half-turn around a.
+     *
+     * @return true at index i, if vertex i may be visible from a
+     */
+    private boolean[] findVisibleCandidates(List<Point> points, Point a) {
+      int n = points.size();
+      if (sweepOrder.length < n) {
+        sweepOrder = new long[2 * n];
+        sweepRank = new int[2 * n];
+        activeEdges = new int[2 * n];
+        activePositions = new int[2 * n];
+        visibleCandidates = new boolean[2 * n];
+      }
+
+      // Sort the vertices by their angle to the first one, as seen from a.
+      // The angle is stored in the upper bits, the index in the lower ones.
+      Point first = points.get(0);
+      double dx = first.x - a.x, dy = first.y - a.y, maxLength = 0;
+      int shift = 32 - Integer.numberOfLeadingZeros(n);
+      double scale = (1L << (62 - shift)) / (2 * Math.PI);
+
+      for (int i = 0; i < n; i++) {
+        Point p = points.get(i);
+        double vx = p.x - a.x, vy = p.y - a.y;
+        double angle = Math.atan2(dx * vy - dy * vx, dx * vx + dy * vy);
+        sweepOrder[i] = ((long) ((angle + Math.PI) * scale) << shift) | i;
+        maxLength = Math.max(maxLength, vx * vx + vy * vy);
+      }
+      Arrays.sort(sweepOrder, 0, n);
+
+      long mask = (1L << shift) - 1;
+      for (int r = 0; r < n; r++)
+        sweepRank[(int) (sweepOrder[r] & mask)] = r;
+
+      // Crossings closer to collinear than this are left to the exact test.
+      double tolerance = MathUtils.EPSILON + 1E-9 * 4 * maxLength;
+
+      int activeCount = 0;
+      Arrays.fill(activePositions, 0, n, -1);
+
+      for (int r = 0; r < n; r++) {
+        int i = (int) (sweepOrder[r] & mask);
+        // edge k goes from vertex k to k + 1
+        int prev = (i + n - 1) % n, next = (i + 1) % n;
+
+        // edges ending at this vertex
+        if (sweepRank[prev] < r)
+          activeCount = removeActiveEdge(prev, activeCount);
+        if (sweepRank[next] < r)
+          activeCount = removeActiveEdge(i, activeCount);
+
+        Point p = points.get(i);
+        boolean hidden = false;
+        for (int k = 0; k < activeCount && !hidden; k++) {
+          int e = activeEdges[k];
+          hidden = crossesClearly(a, p, points.get(e), points.get((e + 1) % n),
+              tolerance);
+        }
+        visibleCandidates[i] = !hidden;
+
+        // edges beginning at this vertex
+        if (sweepRank[prev] > r)
+          activeCount = addActiveEdge(prev, activeCount);
+        if (sweepRank[next] > r)
+          activeCount = addActiveEdge(i, activeCount);
+      }
+
+      return visibleCandidates;
+    }
+
+    private int addActiveEdge(int edge, int activeCount) {
+      if (activePositions[edge] >= 0) return activeCount;
+
+      activeEdges[activeCount] = edge;
+      activePositions[edge] = activeCount;
+      return activeCount + 1;
+    }
+
+    private int removeActiveEdge(int edge, int activeCount) {
+      int pos = activePositions[edge];
+      if (pos < 0) return activeCount;
+
+      int last = activeEdges[--activeCount];
+      activeEdges[pos] = last;
+      activePositions[last] = pos;
+      activePositions[edge] = -1;
+      return activeCount;
+    }
+
+    /**
+     * @return true, if segments ab and cd cross in their interiors, and none
+     *         of the points is closer than tolerance to being collinear.
+     */
+    private static boolean crossesClearly(Point a, Point b, Point c, Point d,
+        double tolerance) {
+      double c1 = cross(a, b, c), c2 = cross(a, b, d);
+      if (!(c1 > tolerance && c2 < -tolerance) &&
+          !(c1 < -tolerance && c2 > tolerance)) return false;
+
+      double c3 = cross(c, d, a), c4 = cross(c, d, b);
+      return (c3 > tolerance && c4 < -tolerance) ||
+          (c3 < -tolerance && c4 > tolerance);
+    }
+
+    private static double cross(Point a, Point b, Point p) {
+      return (b.x - a.x) * (p.y - a.y) - (b.y - a.y) * (p.x - a.x);
+    }
+
     private SteadyGrowthConvexHull initialize(BlackList blacklist)
       throws InterruptedException {
 
@@ -377,7 +660,8 @@ public class SteadyGrowthFactory
       hull.addPoint(a);
       hull.addPoint(b);
 
-      Object[] rets = getNextPointAndHull(hull.getPoints(), hull, blacklist);
+      Object[] rets = getNextPointAndHull(
+          new ArrayList<Point>(hull.getPoints()), hull, blacklist);
 
       blacklist.reset();
 
@@ -386,20 +670,6 @@ public class SteadyGrowthFactory
       return (SteadyGrowthConvexHull) rets[0];
     }
 
-    private void blacklistPoints(Polygon triangle, BlackList blackList) {
-      if(triangle == null) return;
-
-      Iterator<Point> iter = blackList.iterator();
-
-      while (iter.hasNext()) {
-        Point point = iter.next();
-
-        if(triangle.containsPoint(point, true)) continue;
-
-        iter.remove();
-      }
-    }
-
     private Triangle constructTriangle(Polygon hull, int insertIndex){
       if(insertIndex < 0) return null;
 
@@ -2,6 +2,7 @@ package polygonsSWP.generators.heuristics;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -13,9 +14,11 @@ import polygonsSWP.generators.PolygonGenerator;
 import polygonsSWP.generators.PolygonGeneratorFactory;
 import polygonsSWP.geometry.LineSegment;
 import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.OrderedListPolygon.IntersectionAlgorithm;
 import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
 import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
 
 /**
  * (c) 2011-2012
@@ -54,7 +57,7 @@ public class TwoOptMovesFactory
 
   private static class TwoOptMoves implements PolygonGenerator {
     
-    private boolean doStop = false;
+    private volatile boolean doStop = false;
     private List<Point> points;
     final private History steps;
     final private PolygonStatistics statistics;
@@ -89,19 +92,20 @@ public class TwoOptMovesFactory
         statistics.iterations = 0;
       }
 
+      // The set of intersections is only updated for the edges touched by a
+      // move, instead of searching all intersections in every iteration.
+      IntersectionSet intersections = new IntersectionSet(p.getPoints());
+      Random random = Random.create();
+
       Integer[] intersection = null;
-      List<Point> op = null;
-      List<Point> np = null;
-      while(!doStop && (intersection = p.findRandomIntersection()) != null) {
+      List<Point> op = p.getPoints();
+      while(!doStop && (intersection = intersections.random(random)) != null) {
         // Step 3: Replace intersection (vi,vi+1),(vj,vj+1) 
         // with (vj+1,vi+1),(vj,vi)
         
         int vi = intersection[0];
         int vj = intersection[1];
         
-        op = p.getPoints();
-        np = new ArrayList<Point>(op.size());
-        
         if(steps != null){
           steps.newScene().addPolygon(p, true).addLineSegment(
             new LineSegment(op.get(vi), op.get((vi + 1) % op.size())), Color.RED
@@ -110,19 +114,8 @@ public class TwoOptMovesFactory
           ).save();
         }
 
-        // first add all points prior to vi (including vi)
-        for(int i = 0; i <= vi; i++)
-          np.add(op.get(i));
-        
-        // second add vj to vi+1 in reverse order (both included)
-        for(int i = vj; i >= vi + 1; i--)
-          np.add(op.get(i));
-        
-        // third add vj+1 plus all remaining points
-        for(int i = vj + 1; i < op.size(); i++)
-          np.add(op.get(i));
-        
-        p.setPoints(np);
+        // Reverses vi+1 to vj (or the rest of the polygon) in place.
+        intersections.twoOptMove(vi, vj);
         
         if(steps != null)
           steps.newScene().addPolygon(p, true).save();
@@ -138,4 +131,138 @@ public class TwoOptMovesFactory
     }
     
   }
+
+  /**
+   * Set of intersecting edges of a polygon, which is kept up to date while
+   * 2-opt moves are applied. Edges are objects rather than positions, since a
+   * move reverses the positions of a whole chain but only replaces two edges.
+   * Two edges intersect according to OrderedListPolygon.edgesIntersect().
+   */
+  private static class IntersectionSet {
+
+    private static class Edge {
+      int position;
+      final List<Crossing> crossings = new ArrayList<Crossing>();
+
+      Edge(int position) {
+        this.position = position;
+      }
+    }
+
+    private static class Crossing {
+      final Edge a, b;
+      int index;
+
+      Crossing(Edge a, Edge b) {
+        this.a = a;
+        this.b = b;
+      }
+    }
+
+    final private List<Point> points;
+    final private int n;
+    final private Edge[] edges;
+    final private List<Crossing> crossings = new ArrayList<Crossing>();
+
+    IntersectionSet(List<Point> points) {
+      this.points = points;
+      this.n = points.size();
+
+      edges = new Edge[n];
+      for(int i = 0; i < n; i++)
+        edges[i] = new Edge(i);
+
+      List<Integer[]> isecs = new OrderedListPolygon(points).findIntersections(
+          IntersectionAlgorithm.NAIVE);
+      for(Integer[] isec : isecs)
+        add(edges[isec[0]], edges[isec[1]]);
+    }
+
+    /**
+     * @return a randomly chosen intersection in the format of
+     *         OrderedListPolygon.findRandomIntersection(), null if there is
+     *         none.
+     */
+    Integer[] random(Random random) {
+      if(crossings.isEmpty())
+        return null;
+
+      Crossing c = crossings.get(random.nextInt(crossings.size()));
+      int i = c.a.position, j = c.b.position;
+      return i < j ? new Integer[] { i, j } : new Integer[] { j, i };
+    }
+
+    /**
+     * Replaces the intersecting edges (vi,vi+1),(vj,vj+1) with (vi,vj),
+     * (vi+1,vj+1) by reversing the shorter one of the chains vi+1..vj and
+     * vj+1..vi. Both result in the same polygon up to orientation.
+     */
+    void twoOptMove(int i, int j) {
+      remove(edges[i]);
+      remove(edges[j]);
+
+      int length = j - i;
+      if(length <= n - length)
+        reverse(i + 1, length);
+      else
+        reverse(j + 1, n - length);
+
+      // Edges i and j are the only new ones, the edge objects are reused.
+      addCrossings(edges[i], null);
+      addCrossings(edges[j], edges[i]);
+    }
+
+    /**
+     * Reverses the cyclic chain of the given length starting at start, 
+     * together with the edges inside of that chain.
+     */
+    private void reverse(int start, int length) {
+      for(int k = 0, l = length - 1; k < l; k++, l--)
+        Collections.swap(points, (start + k) % n, (start + l) % n);
+
+      for(int k = 0, l = length - 2; k < l; k++, l--) {
+        int pk = (start + k) % n, pl = (start + l) % n;
+        Edge tmp = edges[pk];
+        edges[pk] = edges[pl];
+        edges[pl] = tmp;
+        edges[pk].position = pk;
+        edges[pl].position = pl;
+      }
+    }
+
+    private void addCrossings(Edge e, Edge skip) {
+      for(Edge other : edges) {
+        if(other == e || other == skip)
+          continue;
+
+        int i = Math.min(e.position, other.position), 
+            j = Math.max(e.position, other.position);
+        if(OrderedListPolygon.edgesIntersect(points, i, j))
+          add(e, other);
+      }
+    }
+
+    private void add(Edge a, Edge b) {
+      Crossing c = new Crossing(a, b);
+      c.index = crossings.size();
+      crossings.add(c);
+      a.crossings.add(c);
+      b.crossings.add(c);
+    }
+
+    private void remove(Edge e) {
+      for(Crossing c : e.crossings) {
+        Edge other = c.a == e ? c.b : c.a;
+        other.crossings.remove(c);
+
+        // Swap with the last crossing for constant time removal.
+        Crossing last = crossings.remove(crossings.size() - 1);
+        if(last != c) {
+          last.index = c.index;
+          crossings.set(c.index, last);
+        }
+      }
+      e.crossings.clear();
+    }
+  }
 }
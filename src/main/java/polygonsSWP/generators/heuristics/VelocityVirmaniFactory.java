@@ -1,19 +1,27 @@
 package polygonsSWP.generators.heuristics;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import polygonsSWP.data.History;
 import polygonsSWP.data.PolygonStatistics;
 import polygonsSWP.generators.IllegalParameterizationException;
 import polygonsSWP.generators.PolygonGenerator;
 import polygonsSWP.generators.PolygonGeneratorFactory;
-import polygonsSWP.geometry.LineSegment;
 import polygonsSWP.geometry.OrderedListPolygon;
 import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
+import polygonsSWP.util.Random;
+import polygonsSWP.util.intersections.IntersectionMode;
+import polygonsSWP.util.intersections.IntersectionUtils;
+import polygonsSWP.util.intersections.LineSegmentIntersectionMode;
 
 /**
  * (c) 2011-2012
@@ -70,8 +78,13 @@ public class VelocityVirmaniFactory
     if (radius * 2 > bound) { throw new IllegalParameterizationException("Radius must be smaller than the bounds allow (Pre: Radius * 2 < bound).", Parameters.radius); }
     
     if(n<3){throw new IllegalParameterizationException("n must be greater or equal 3");}
+
+    // optional, moves the points one by one if not set
+    Integer threads = (Integer) params.get(Parameters.threads);
+    if (threads == null) threads = 0;
+    if (threads < 0) throw new IllegalParameterizationException("Number of threads must not be negative.", Parameters.threads);
     
-    return new VelocityVirmani(n, radius, runs, bound, maxVelo, steps, stats);
+    return new VelocityVirmani(n, radius, runs, bound, maxVelo, threads, steps, stats);
   }
 
 
@@ -90,8 +103,32 @@ public class VelocityVirmaniFactory
 
     private boolean stop = false;
 
-    VelocityVirmani(int n, long radius, int runs, int bound, int maxVelo, History steps, PolygonStatistics statistics) {
-      this.rand = new Random();
+    private EdgeGrid grid;
+    private EdgeGrid.Candidates found;
+
+    private int rejections = 0;
+    private double avgspeed_without_rejections = 0;
+
+    /* Parallel mode, see moveInBatches(). */
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final byte OUT_OF_BOUNDS = 0, REJECTED = 1, ACCEPTED = 2, CONFLICT = 3;
+    private final int threads;
+    private ExecutorService executor;
+    private double[] velocities;
+    private int[] batch;
+    private int batchSize;
+    private byte[] states;
+    private int[] movedEdges;
+    private int batches = 0;
+    private EdgeGrid.Candidates[] threadFound;
+    private Point[] threadPoints;
+
+    private static final IntersectionMode EXCLUDE_END_POINTS =
+        new LineSegmentIntersectionMode(false);
+
+    VelocityVirmani(int n, long radius, int runs, int bound, int maxVelo, int threads, History steps, PolygonStatistics statistics) {
+      this.rand = Random.create();
+      this.threads = threads;
       this.n = n;
       this.radius = radius;
       this.runs = runs;
@@ -105,6 +142,8 @@ public class VelocityVirmaniFactory
     public Polygon generate() {
 
       OrderedListPolygon poly = regularPolygon(n, radius, bound);
+      grid = new EdgeGrid(poly.getPoints(), bound);
+      found = new EdgeGrid.Candidates(n);
 
       if(history != null){
         history.clear();
@@ -117,14 +156,28 @@ public class VelocityVirmaniFactory
 
       double velox, veloy;
 
-      int rejections = 0;
       int iterations = runs;
-      double avgspeed_without_rejections = 0;
-      
-      
+
+      if (threads > 0) {
+        velocities = new double[2 * n];
+        batch = new int[n];
+        states = new byte[n];
+        movedEdges = new int[n];
+        threadFound = new EdgeGrid.Candidates[threads];
+        threadPoints = new Point[threads];
+        for (int t = 0; t < threads; t++) {
+          threadFound[t] = new EdgeGrid.Candidates(n);
+          threadPoints[t] = new Point(0, 0);
+        }
+        if (threads > 1) executor = Executors.newFixedThreadPool(threads);
+      }
+
+      try {
       while (runs > 0 && !stop) // The Loop for the Number of Iterations. Stops if "stop" is true.
       {
-        
+        if (threads > 0)
+          moveInBatches(poly);
+        else
         for (int i = 0; i < n; i++) // Looping through the Points
         {
 
@@ -149,6 +202,9 @@ public class VelocityVirmaniFactory
               rejections++;
             }
           }
+          else {
+            grid.move(i);
+          }
         }
         runs--;
         
@@ -159,6 +215,14 @@ public class VelocityVirmaniFactory
           .save();
         }
       }
+      }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stop = true;
+      }
+      finally {
+        if (executor != null) executor.shutdownNow();
+      }
       if (stop) return null;// If stop is called and this was finished. Give back null.
 
       if (statistics != null) {
@@ -175,40 +239,352 @@ public class VelocityVirmaniFactory
       return poly;
     }
     
+    /**
+     * One iteration of the parallel mode. The velocities are drawn as in the
+     * sequential mode, but the points are moved in batches: the points
+     * i = 0, 1, 2 (mod 3), and the up to two points left over one by one, so
+     * the points of a batch never share an edge. The result only depends on
+     * the seed, not on the number of threads.
+     */
+    private void moveInBatches(OrderedListPolygon poly) throws InterruptedException
+    {
+      for (int i = 0; i < n; i++)
+      {
+        velocities[2 * i] = rand.nextBoolean() ? rand.nextDouble() * maxVelo : -rand.nextDouble() * maxVelo;
+        velocities[2 * i + 1] = rand.nextBoolean() ? rand.nextDouble() * maxVelo : -rand.nextDouble() * maxVelo;
+      }
+
+      int full = n - n % 3;
+      for (int k = 0; k < 3 + n % 3; k++)
+      {
+        batchSize = 0;
+        if (k < 3)
+          for (int i = k; i < full; i += 3)
+            batch[batchSize++] = i;
+        else
+          batch[batchSize++] = full + k - 3;
+
+        moveBatch(poly);
+      }
+    }
+
+    /**
+     * Moves the points of the batch. Each move is checked against the
+     * polygon as it was before the batch, in parallel. Then all valid moves
+     * are applied and checked against each other, again in parallel. Moves
+     * intersecting each other are both rejected, which keeps the polygon
+     * simple and does not depend on the order of the checks. Rejections are
+     * counted as in the sequential mode.
+     */
+    private void moveBatch(OrderedListPolygon poly) throws InterruptedException
+    {
+      forEachInBatch(poly, false);
+
+      batches++;
+      for (int k = 0; k < batchSize; k++)
+      {
+        int i = batch[k];
+        if (states[i] != ACCEPTED) continue;
+
+        poly.getPoint(i).x += velocities[2 * i];
+        poly.getPoint(i).y += velocities[2 * i + 1];
+        grid.move(i);
+        movedEdges[(i - 1 + n) % n] = movedEdges[i] = batches;
+      }
+
+      forEachInBatch(poly, true);
+
+      for (int k = 0; k < batchSize; k++)
+      {
+        int i = batch[k];
+        double velox = velocities[2 * i], veloy = velocities[2 * i + 1];
+        if (states[i] == OUT_OF_BOUNDS || states[i] == ACCEPTED) continue;
+
+        if (states[i] == CONFLICT) {
+          poly.getPoint(i).x -= velox;
+          poly.getPoint(i).y -= veloy;
+          grid.move(i);
+        }
+
+        if (statistics != null) {
+          avgspeed_without_rejections += velox + veloy;
+          rejections++;
+        }
+      }
+    }
+
+    /**
+     * Calls checkMoves() for the whole batch, in parallel if it is large.
+     */
+    private void forEachInBatch(final OrderedListPolygon poly, final boolean applied)
+      throws InterruptedException
+    {
+      if (executor == null || batchSize < PARALLEL_THRESHOLD) {
+        checkMoves(poly, 0, batchSize, 0, applied);
+        return;
+      }
+
+      List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+      for (int t = 0; t < threads; t++) {
+        final int thread = t, from = t * batchSize / threads, to = (t + 1) * batchSize / threads;
+        futures.add(executor.submit(new Runnable() {
+          @Override
+          public void run() {
+            checkMoves(poly, from, to, thread, applied);
+          }
+        }));
+      }
+
+      try {
+        for (Future<?> future : futures)
+          future.get();
+      }
+      catch (ExecutionException e) {
+        throw new RuntimeException("VelocityVirmani: " + e.getMessage(), e.getCause());
+      }
+    }
+
+    /**
+     * Checks the moves of batch[from] to batch[to - 1]. Before they are
+     * applied, against the polygon; afterwards, the accepted moves against
+     * each other.
+     */
+    private void checkMoves(OrderedListPolygon poly, int from, int to, int thread, boolean applied)
+    {
+      EdgeGrid.Candidates found = threadFound[thread];
+      Point moved = threadPoints[thread];
+
+      for (int k = from; k < to; k++)
+      {
+        int i = batch[k];
+        Point p = poly.getPoint(i);
+
+        if (applied) {
+          if (states[i] == ACCEPTED && !isSimple(poly, i, p, found, true))
+            states[i] = CONFLICT;
+          continue;
+        }
+
+        double velox = velocities[2 * i], veloy = velocities[2 * i + 1];
+        if (p.x + velox > bound || p.y + veloy > bound || p.x + velox < 0 || p.y + veloy < 0) {
+          states[i] = OUT_OF_BOUNDS;
+          continue;
+        }
+
+        moved.x = p.x + velox;
+        moved.y = p.y + veloy;
+        states[i] = isSimple(poly, i, moved, found, false) ? ACCEPTED : REJECTED;
+      }
+    }
+
     /**
      * Check for simple. Checks only one Point with the Others.
      * Condition: Polygon is simple if the given Point on "indexToCheck" doesnt intersect with the other Lines
+     * Only the edges near the two edges of the point are checked, see EdgeGrid.
      * @param polygon Polygon
      * @param indexToCheck
      * @return
      */
     private boolean isSimple(OrderedListPolygon polygon, int indexToCheck)
+    {
+      return isSimple(polygon, indexToCheck, polygon.getPoint(indexToCheck), found, false);
+    }
+
+    /**
+     * Same as isSimple(polygon, indexToCheck), if the point was at b.
+     * @param found candidates of the calling thread
+     * @param onlyMoved if set, only checks the edges moved in this batch
+     */
+    private boolean isSimple(OrderedListPolygon polygon, int indexToCheck, Point b,
+        EdgeGrid.Candidates found, boolean onlyMoved)
     {
       int size = polygon.size();
       int min = (indexToCheck-1+size) % size;//Calculates the index of the previous and next Point
       int max = (indexToCheck + 1) % size;
-      LineSegment l1 = new LineSegment(polygon.getPoint(min), polygon.getPoint(indexToCheck));
-      LineSegment l2 = new LineSegment(polygon.getPoint(indexToCheck), polygon.getPoint(max));
-      LineSegment otherLine;
-      Point[] res1, res2;
-      
-      for(int i = 0; i < size; i++)
+      Point a = polygon.getPoint(min), c = polygon.getPoint(max);
+
+      grid.collect(a, b, c, found);
+
+      for(int k = 0; k < found.count; k++)
       {
+        int i = found.edges[k];
         if(indexToCheck == i || (i+1) % size == indexToCheck) //Shouldnt compare to its own lines 
           continue;
-        
-        otherLine = new LineSegment(polygon.getPoint(i), polygon.getPoint((i+1)%size));
-        res1 = l1.intersect(otherLine, true);
-        res2 = l2.intersect(otherLine, true);
-        
-        if(res1 == null && res2 == null)
+        if(onlyMoved && movedEdges[i] != batches)
+          continue;
+
+        // same as LineSegment.intersect(otherLine, true), without allocations
+        Point d = polygon.getPoint(i), e = polygon.getPoint((i+1)%size);
+        if(IntersectionUtils.intersect(a, b, d, e, EXCLUDE_END_POINTS, EXCLUDE_END_POINTS) == null &&
+            IntersectionUtils.intersect(b, c, d, e, EXCLUDE_END_POINTS, EXCLUDE_END_POINTS) == null)
           continue;//continue to check
         return false;//not simple
-        
       }
       return true;//every combination checked. Its simple.
     }
 
+    /**
+     * Uniform grid over the bounds, storing edge i (from point i to i + 1)
+     * in every cell it crosses. isSimple() only has to check the edges in the
+     * cells crossed by the two edges of the moved point. Edges that are
+     * collinear, but far apart, are not found any more; LineSegment.intersect()
+     * reports them as intersecting.
+     *
+     * The grid remembers the points as they were when their edges were
+     * added, and must be told about every accepted move.
+     */
+    private static class EdgeGrid
+    {
+      /** Cells are widened by this, to cover rounding errors. */
+      private static final double MARGIN = 1E-6;
+
+      private final List<Point> points;
+      private final double[] xs, ys;
+
+      private final int dim;
+      private final double cellSize;
+      private final int[][] cells;
+      private final int[] cellSizes;
+
+      /**
+       * Edges found by collect(), marked in stamps to avoid duplicates. The
+       * grid may be queried by several threads, each with its own
+       * Candidates, as long as it is not changed.
+       */
+      static class Candidates
+      {
+        final int[] stamps, edges;
+        int stamp = 0, count;
+
+        Candidates(int n) {
+          stamps = new int[n];
+          edges = new int[n];
+        }
+      }
+
+      EdgeGrid(List<Point> points, int bound) {
+        int n = points.size();
+        this.points = points;
+        xs = new double[n];
+        ys = new double[n];
+
+        dim = Math.max(1, (int) Math.ceil(Math.sqrt(n)));
+        cellSize = Math.max(bound, 1) / (double) dim;
+        cells = new int[dim * dim][];
+        cellSizes = new int[dim * dim];
+
+        for (int i = 0; i < n; i++) {
+          xs[i] = points.get(i).x;
+          ys[i] = points.get(i).y;
+        }
+        for (int i = 0; i < n; i++)
+          updateEdge(i, true);
+      }
+
+      /**
+       * Updates the two edges of point i after it has been moved.
+       */
+      void move(int i) {
+        int prev = (i - 1 + xs.length) % xs.length;
+        updateEdge(prev, false);
+        updateEdge(i, false);
+
+        xs[i] = points.get(i).x;
+        ys[i] = points.get(i).y;
+        updateEdge(prev, true);
+        updateEdge(i, true);
+      }
+
+      /**
+       * Collects the edges in the cells crossed by ab and bc into found.
+       */
+      void collect(Point a, Point b, Point c, Candidates found) {
+        if (++found.stamp == 0) {
+          Arrays.fill(found.stamps, 0);
+          found.stamp = 1;
+        }
+        found.count = 0;
+        walk(a.x, a.y, b.x, b.y, 0, found);
+        walk(b.x, b.y, c.x, c.y, 0, found);
+      }
+
+      private void updateEdge(int edge, boolean add) {
+        int next = (edge + 1) % xs.length;
+        walk(xs[edge], ys[edge], xs[next], ys[next], add ? edge : ~edge, null);
+      }
+
+      /**
+       * Visits all cells crossed by segment (x0, y0), (x1, y1), column by
+       * column. Collects their edges into found if it is not null,
+       * otherwise adds edge to them if it is positive, or removes ~edge.
+       */
+      private void walk(double x0, double y0, double x1, double y1, int edge,
+          Candidates found) {
+        double xmin = Math.min(x0, x1), xmax = Math.max(x0, x1);
+        int c0 = index(xmin - MARGIN), c1 = index(xmax + MARGIN);
+        double dx = x1 - x0, dy = y1 - y0;
+
+        for (int c = c0; c <= c1; c++) {
+          // Part of the segment in this column.
+          double lo = Math.max(xmin, c * cellSize - MARGIN);
+          double hi = Math.min(xmax, (c + 1) * cellSize + MARGIN);
+          if (lo > hi) lo = hi = (lo > xmax) ? xmax : xmin;
+
+          double ylo = y0, yhi = y1;
+          if (dx != 0) {
+            ylo = y0 + clamp((lo - x0) / dx) * dy;
+            yhi = y0 + clamp((hi - x0) / dx) * dy;
+          }
+          if (ylo > yhi) {
+            double tmp = ylo;
+            ylo = yhi;
+            yhi = tmp;
+          }
+
+          int r1 = index(yhi + MARGIN);
+          for (int r = index(ylo - MARGIN); r <= r1; r++)
+            visit(r * dim + c, edge, found);
+        }
+      }
+
+      private void visit(int cell, int edge, Candidates found) {
+        int[] list = cells[cell];
+        if (found != null) {
+          for (int k = 0; k < cellSizes[cell]; k++) {
+            int e = list[k];
+            if (found.stamps[e] == found.stamp) continue;
+            found.stamps[e] = found.stamp;
+            found.edges[found.count++] = e;
+          }
+        }
+        else if (edge >= 0) {
+          if (list == null) list = cells[cell] = new int[4];
+          else if (cellSizes[cell] == list.length)
+            list = cells[cell] = Arrays.copyOf(list, 2 * list.length);
+          list[cellSizes[cell]++] = edge;
+        }
+        else {
+          for (int k = 0; k < cellSizes[cell]; k++) {
+            if (list[k] == ~edge) {
+              list[k] = list[--cellSizes[cell]];
+              break;
+            }
+          }
+        }
+      }
+
+      private int index(double x) {
+        double i = Math.floor(x / cellSize);
+        if (!(i >= 0)) return 0;
+        if (i >= dim) return dim - 1;
+        return (int) i;
+      }
+
+      private static double clamp(double t) {
+        return t < 0 ? 0 : (t > 1 ? 1 : t);
+      }
+    }
+
 
     /**
      * Generates a regularPolygon
@@ -1,20 +1,29 @@
 package polygonsSWP.generators.other;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import polygonsSWP.data.History;
 import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.data.Scene;
 import polygonsSWP.generators.IllegalParameterizationException;
 import polygonsSWP.generators.PolygonGenerator;
 import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.geometry.LineSegment;
 import polygonsSWP.geometry.OrderedListPolygon;
 import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
 import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.MathUtils;
 
 /**
  * (c) 2011-2012
@@ -49,12 +58,39 @@ public class EnumeratingPermuteAndRejectFactory
       PolygonStatistics stats, History steps)
     throws IllegalParameterizationException {
 
+    Integer threads = (Integer) params.get(Parameters.threads);
+    if (threads == null) threads = 1;
+    if (threads < 1) throw new IllegalParameterizationException("Number of threads must be positive.", Parameters.threads);
+
+    String checkpoint = (String) params.get(Parameters.checkpoint);
+    Boolean resume = (Boolean) params.get(Parameters.resume);
+    File checkpointFile = (checkpoint != null) ? new File(checkpoint) : null;
+
+    if (resume != null && resume) {
+      if (checkpointFile == null)
+        throw new IllegalParameterizationException(
+            "Resuming needs a checkpoint file.", Parameters.checkpoint);
+
+      EnumerationCheckpoint cp;
+      try {
+        cp = EnumerationCheckpoint.read(checkpointFile);
+      }
+      catch (IOException e) {
+        throw new IllegalParameterizationException(
+            "Cannot read checkpoint: " + e.getMessage(), Parameters.checkpoint);
+      }
+      return new EnumeratingPermuteAndReject(
+          new ArrayList<Point>(cp.points), threads, checkpointFile, cp, steps,
+          stats);
+    }
+
     List<Point> points = GeneratorUtils.createOrUsePoints(params, true);
-    return new EnumeratingPermuteAndReject(points, steps, stats);
+    return new EnumeratingPermuteAndReject(points, threads, checkpointFile,
+        null, steps, stats);
   }
 
   /**
-   * In this optimized version of Permute & Reject, we enumerate all the
+   * In this optimized version of Permute & Reject, we enumerate the
    * permutations of 1..N, where N is the number of points, in order to
    * avoid re-checking polygon chains for simplicity.
    * 
@@ -79,18 +115,28 @@ public class EnumeratingPermuteAndRejectFactory
    * ones, the following implementation makes use of two simple facts:
    *   1. We only create permutations for the trailing N-1 points and always prepend
    *      these permutations with the first point. This eliminates all 'rotations'.
-   *   2. We use the Steinhaus-Johnson-Trotter algorithm to enumerate the permutations
-   *      iteratively. This algorithm has the habit of enumerating 'mirrored' permutations
-   *      only in the 2nd half of the list, i.e. after the first n!/2 permutations
-   *      have been named. We have no proof for this assumption, but experimentation
-   *      suggests that we're right (see the below main() function!). 
-   *      This in combination with the above remarks ensures that we first find a 
-   *      solution before testing any 'mirrored' polygon chains.
+   *   2. Of a chain [x0, x1, ..., xn] and its mirror [x0, xn, ..., x1] we only
+   *      enumerate the one with x1 < xn.
+   * - The permutations are enumerated depth first, i.e. the chain is extended
+   * one point at a time and every new edge is tested against the edges placed
+   * before. If it intersects one of them, none of the permutations starting
+   * with that chain can be simple and the whole subtree is skipped.
+   * 
+   * statistics.iterations counts the chains tested, count_of_backtracks the
+   * skipped subtrees.
+   * 
+   * With more than one thread (and no history), the chains are split by
+   * their first SPLIT_DEPTH points. Every worker takes the next unexplored
+   * prefix as soon as it is done with its subtree, so workers stay busy even
+   * if the subtrees differ a lot in size. The first simple chain found by
+   * any worker ends the search, i.e. the result may differ from the one
+   * found by a single thread.
    * 
-   * REMARK: At the time of this writing, EP&R has still not succeeded in creating a
-   * 14-point polygon, whereas P&R already did 18. Although theoretically we established
-   * an upper bound for the runtime in EP&R, the used enumeration scheme may still yield
-   * worse expected runtimes than pure random permutation?
+   * Given a checkpoint file, the search cursor is written to it every
+   * CHECKPOINT_INTERVAL ms and when the generator is stopped, and the file
+   * is deleted once a polygon has been found. A parallel search restarts the
+   * prefixes which were in progress, so the counts in the statistics may
+   * include some work twice after resuming.
    * 
    * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
    */
@@ -98,148 +144,424 @@ public class EnumeratingPermuteAndRejectFactory
     implements PolygonGenerator
   {
     
-    private boolean doStop = false;
+    /** Number of points of the prefixes the parallel search is split by. */
+    private static final int SPLIT_DEPTH = 4;
+    /** Time between two checkpoints in ms. */
+    private static final long CHECKPOINT_INTERVAL = 60 * 1000;
+
+    private volatile boolean doStop = false;
+    /* Set once any worker has found a simple chain. */
+    private volatile boolean found = false;
     private List<Point> points;
+    private final int threads;
+
+    private final File checkpointFile;
+    /* Cursor to start from, only for the first call of generate(). */
+    private EnumerationCheckpoint resumeFrom;
+    private long lastCheckpoint;
+    /* Work of the finished (parts of) searches. */
+    private long iterations, backtracks;
     
     final private History steps;
     final private PolygonStatistics statistics;
 
-    EnumeratingPermuteAndReject(List<Point> points, History steps,
+    EnumeratingPermuteAndReject(List<Point> points, int threads,
+        File checkpointFile, EnumerationCheckpoint resumeFrom, History steps,
         PolygonStatistics statistics) {
       this.points = points;
+      this.threads = threads;
+      this.checkpointFile = checkpointFile;
+      this.resumeFrom = resumeFrom;
       this.steps = steps;
       this.statistics = statistics;
     }
 
     @Override
     public Polygon generate() {
-      OrderedListPolygon p = null;
-      final int permN = points.size() - 1;
-      final int[] perm = new int[permN];
-      final int[] dir = new int[permN];
-
-      // Initial permutation.
-      for(int i = 1; i <= permN; i++) {
-        perm[i - 1] = i;
-        dir[i - 1] = -1; // Left.
-      }
-      
       // Initialize history and statistic. 
       if (steps != null) steps.clear();
-      if (statistics != null) statistics.iterations = 0;
-
-      do {
-        // Step 1: Construct a polygon from the permutation.
-        List<Point> poly = new ArrayList<Point>();
-        poly.add(points.get(0));
-        for (int i = 0; i < permN; i++)
-          poly.add(points.get(perm[i]));
-        p = new OrderedListPolygon(poly);
-
-        // Create a new scene for each polygon and update statistic.
-        if (steps != null) steps.newScene().addPolygon(p, true).save();
-        if (statistics != null) statistics.iterations++;
-        
-        // Step 2: Accept simple polygons.
-        if (p.isSimple()) {
-          // If not in counterclockwise orientation, reverse orientation.
-          if (p.isClockwise() == 1) p.reverse();
-
-          break;
-        }
-        
-        // Step 3: Create a new Steinhaus-Johnson-Trotter permutation.
-        pjt(perm, dir);
-        
-      } while (!doStop);
 
+      EnumerationCheckpoint start = resumeFrom;
+      resumeFrom = null;
+      iterations = (start != null) ? start.iterations : 0;
+      backtracks = (start != null) ? start.backtracks : 0;
+      lastCheckpoint = System.currentTimeMillis();
+
+      found = false;
+      int[] chain;
+      if (threads > 1 && steps == null && points.size() > SPLIT_DEPTH + 1) {
+        chain = searchInParallel(start);
+      }
+      else {
+        ChainSearch search = new ChainSearch(points);
+        if (start != null) search.restore(start.chain, start.next);
+        search.checkpoints = checkpointFile != null;
+
+        chain = search.advance(points.size()) ? search.chain : null;
+        addStatistics(search);
+        if (doStop && checkpointFile != null)
+          writeCheckpoint(search.chain, search.depth, search.next[search.depth]);
+      }
+
+      if (statistics != null) {
+        // Long searches can exceed the range of the statistics fields.
+        statistics.iterations = (int) Math.min(iterations, Integer.MAX_VALUE);
+        statistics.count_of_backtracks =
+            (int) Math.min(backtracks, Integer.MAX_VALUE);
+      }
       if (doStop) return null;
-      else return p;
+      if (chain != null && checkpointFile != null) checkpointFile.delete();
+
+      // The search visits every chain, so this means the points are not in
+      // general position.
+      if (chain == null)
+        throw new RuntimeException(
+            "EnumeratingPermuteAndReject.generate: no simple polygon found.");
+
+      List<Point> poly = new ArrayList<Point>(points.size());
+      for (int i : chain)
+        poly.add(points.get(i));
+      OrderedListPolygon p = new OrderedListPolygon(poly);
+
+      // If not in counterclockwise orientation, reverse orientation.
+      if (p.isClockwise() == 1) p.reverse();
+
+      if (steps != null) steps.newScene().addPolygon(p, true).save();
+      return p;
     }
 
-    private static void pjt(final int[] perm, final int[] dir) {
-      final int n = perm.length;
-      
-      // Find the largest mobile integer.
-      int lmi = -1; // Largest mobile number's index.
-      for(int i = 0; i < n; i++) {
-        // If an integer is on the rightmost column pointing to the right, it’s not mobile.
-        // If an integer is on the leftmost column pointing to the left, it’s not mobile.
-        if((i == (n - 1) && dir[i] == 1) || (i == 0 && dir[i] == -1))
-          continue;
-        
-        // Integer is mobile, if the adjacent integer in its associated direction is smaller.
-        if(perm[i] > perm[i + dir[i]]) {
-          // Check if it's larger than the current lmn.
-          if((lmi == -1) || (perm[i] > perm[lmi]))
-            lmi = i;
+    /**
+     * @return the first simple chain found by any worker, null if there is
+     *         none or the generator was stopped.
+     */
+    private int[] searchInParallel(EnumerationCheckpoint start) {
+      final int n = points.size();
+      final ChainSearch prefixes = new ChainSearch(points);
+      final int[][] result = new int[1][];
+      // Prefixes handed out and not yet searched, in enumeration order.
+      final List<int[]> inProgress = new ArrayList<int[]>();
+
+      if (start != null) {
+        // Restart the prefix the cursor lies in.
+        if (start.chain.length >= SPLIT_DEPTH)
+          prefixes.restore(Arrays.copyOf(start.chain, SPLIT_DEPTH - 1),
+              start.chain[SPLIT_DEPTH - 1]);
+        else
+          prefixes.restore(start.chain, start.next);
+      }
+
+      ExecutorService es = Executors.newFixedThreadPool(threads);
+      try {
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (int t = 0; t < threads; t++) {
+          futures.add(es.submit(new Runnable() {
+            @Override
+            public void run() {
+              ChainSearch search = new ChainSearch(points);
+              try {
+                while (!doStop && !found) {
+                  int[] prefix;
+                  synchronized (prefixes) {
+                    if (!prefixes.advance(SPLIT_DEPTH)) return;
+                    search.startAt(prefixes);
+                    prefix = Arrays.copyOf(prefixes.chain, SPLIT_DEPTH);
+                    inProgress.add(prefix);
+                  }
+
+                  if (search.advance(n)) {
+                    synchronized (result) {
+                      if (result[0] == null) result[0] = search.chain.clone();
+                    }
+                    found = true;
+                  }
+                  else if (!doStop && !found) {
+                    addStatistics(search);
+                    synchronized (prefixes) {
+                      inProgress.remove(prefix);
+                      if (checkpointFile != null && isCheckpointDue())
+                        writeCheckpoint(prefixes, inProgress);
+                    }
+                  }
+                }
+              }
+              finally {
+                addStatistics(search);
+              }
+            }
+          }));
         }
+        for (Future<?> future : futures)
+          future.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        doStop = true;
+      } catch (ExecutionException e) {
+        throw new RuntimeException("EnumeratingPermuteAndReject: " +
+            e.getMessage(), e.getCause());
+      } finally {
+        es.shutdownNow();
       }
-      
-      // No mobile integer? Algorithm terminates. Here, we should
-      // really already have found a simple polygon.
-      if(lmi < 0) {
-        throw new RuntimeException("Our assumptions are false.");
-      }
-        
-      // Swap it with the adjacent element.
-      int ai = lmi + dir[lmi];
-      int permtmp = perm[ai];
-      int dirtmp = dir[ai];
-      perm[ai] = perm[lmi];
-      dir[ai] = dir[lmi];
-      perm[lmi] = permtmp;
-      dir[lmi] = dirtmp;
-      
-      // Remember, that we changed the largest mobile number's index.
-      lmi = ai;
-      
-      // After each swapping, check if there’s any number, larger than the current 
-      // largest mobile integer. If there’s one or more, change the direction 
-      // of all of them. 
-      for(int i = 0; i < n; i++) {
-        if(perm[i] > perm[lmi])
-          dir[i] = (dir[i] < 0) ? 1 : -1;
+
+      addStatistics(prefixes);
+      if (doStop && checkpointFile != null)
+        writeCheckpoint(prefixes, inProgress);
+
+      synchronized (result) {
+        return result[0];
       }
     }
 
+    /**
+     * Adds the work of the search to the totals and resets its counters.
+     */
+    private synchronized void addStatistics(ChainSearch search) {
+      iterations += search.iterations;
+      backtracks += search.backtracks;
+      search.iterations = search.backtracks = 0;
+    }
+
+    private synchronized boolean isCheckpointDue() {
+      return System.currentTimeMillis() - lastCheckpoint >= CHECKPOINT_INTERVAL;
+    }
+
+    /**
+     * Writes the cursor of a parallel search: the first prefix still in
+     * progress, or the position of the prefix search if there is none.
+     */
+    private void writeCheckpoint(ChainSearch prefixes, List<int[]> inProgress) {
+      synchronized (prefixes) {
+        if (!inProgress.isEmpty()) {
+          int[] first = inProgress.get(0);
+          writeCheckpoint(first, SPLIT_DEPTH - 1, first[SPLIT_DEPTH - 1]);
+        }
+        else if (prefixes.depth == SPLIT_DEPTH) {
+          // The last prefix handed out is done.
+          writeCheckpoint(prefixes.chain, SPLIT_DEPTH - 1,
+              prefixes.chain[SPLIT_DEPTH - 1] + 1);
+        }
+        else {
+          writeCheckpoint(prefixes.chain, prefixes.depth,
+              prefixes.next[prefixes.depth]);
+        }
+      }
+    }
+
+    /**
+     * Writes the cursor chain[0..depth-1], next with the current totals.
+     */
+    private synchronized void writeCheckpoint(int[] chain, int depth,
+        int next) {
+      try {
+        new EnumerationCheckpoint(points, Arrays.copyOf(chain, depth), next,
+            iterations, backtracks).write(checkpointFile);
+      }
+      catch (IOException e) {
+        throw new RuntimeException(
+            "EnumeratingPermuteAndReject: cannot write checkpoint " +
+                checkpointFile + ": " + e.getMessage(), e);
+      }
+      lastCheckpoint = System.currentTimeMillis();
+    }
+
     @Override
     public void stop() {
       doStop = true;
     }
-  }
-  
-  public static void main(String[] args) {
-    int N = 8;
-    List<int[]> perms = new LinkedList<int[]>();
-    int[] perm = new int[N];
-    int[] dir = new int[N];
-    for(int i = 0; i < N; i++) {
-      perm[i] = i + 1;
-      dir[i] = -1;
-    }
-    
-    // Expected reversed permutation at N!/2.
-    int expected = 1;
-    for(int i = 3; i <= N; i++) {
-      expected *= i;
-    }
-    
-    while(true) {
-      // Save a reverse copy.
-      int[] revperm = new int[N];
-      for(int i = 0; i < N; i++)
-        revperm[i] = perm[N - 1 - i];
-      perms.add(revperm);
-      
-      EnumeratingPermuteAndReject.pjt(perm, dir);
-      
-      for(int[] revp : perms) {
-        if(Arrays.equals(perm, revp)) {
-          int actual = perms.size();
-          System.out.println("Reversed array found at " + actual + ", expected at " + expected + ".");
-          return;
+
+    /**
+     * Depth first search for a simple chain, see above. chain[0..depth-1]
+     * is the chain placed so far, always starting with point 0. The search
+     * does not backtrack beyond chain[0..rootDepth-1], see startAt().
+     */
+    private class ChainSearch
+    {
+      final double[] xs, ys;
+      final int n;
+
+      final int[] chain;
+      final boolean[] used;
+      /* next[d] is the next point to try at position d. */
+      final int[] next;
+      int depth, rootDepth = 1;
+
+      long iterations = 0, backtracks = 0;
+      /* Write checkpoints while searching, single thread only. */
+      boolean checkpoints = false;
+
+      ChainSearch(List<Point> points) {
+        n = points.size();
+        xs = new double[n];
+        ys = new double[n];
+        for (int i = 0; i < n; i++) {
+          xs[i] = points.get(i).x;
+          ys[i] = points.get(i).y;
+        }
+
+        chain = new int[n];
+        used = new boolean[n];
+        next = new int[n + 1];
+
+        chain[0] = 0;
+        used[0] = true;
+        depth = 1;
+        next[1] = 1;
+      }
+
+      /**
+       * Continues the search at the given cursor, see EnumerationCheckpoint.
+       */
+      void restore(int[] prefix, int cursor) {
+        Arrays.fill(used, false);
+        for (int d = 0; d < prefix.length; d++) {
+          chain[d] = prefix[d];
+          used[prefix[d]] = true;
+          next[d] = prefix[d] + 1;
+        }
+        depth = prefix.length;
+        next[depth] = cursor;
+      }
+
+      /**
+       * Restricts the search to the chains starting with the current chain
+       * of the given search.
+       */
+      void startAt(ChainSearch prefix) {
+        System.arraycopy(prefix.chain, 0, chain, 0, prefix.depth);
+        System.arraycopy(prefix.used, 0, used, 0, n);
+        depth = rootDepth = prefix.depth;
+        next[depth] = 1;
+      }
+
+      /**
+       * Continues the search until the chain has the given number of points.
+       * If it already has, the search goes on with the next chain.
+       * 
+       * @return true, if a chain has been found. False, if there is none
+       *         left or the search was stopped.
+       */
+      boolean advance(int target) {
+        if (depth == target && depth > rootDepth) used[chain[--depth]] = false;
+
+        int loops = 0;
+        while (!doStop && !found) {
+          // All chains before the cursor (chain[0..depth-1], next[depth])
+          // have been tested here.
+          if (checkpoints && ++loops % 4096 == 0 && isCheckpointDue()) {
+            addStatistics(this);
+            writeCheckpoint(chain, depth, next[depth]);
+          }
+
+          int v = next[depth];
+          while (v < n && used[v])
+            v++;
+
+          if (v == n) {
+            // All points tried at this position, back to the previous one.
+            if (depth == rootDepth) return false;
+            used[chain[--depth]] = false;
+            continue;
+          }
+          next[depth] = v + 1;
+
+          if (!mirrorAllowed(v)) continue;
+
+          iterations++;
+          if (!fits(v)) {
+            backtracks++;
+            if (steps != null) addRejectedScene(v);
+            continue;
+          }
+
+          chain[depth] = v;
+          used[v] = true;
+          if (++depth < n) next[depth] = 1;
+          if (depth == target) return true;
         }
+        return false;
+      }
+
+      /**
+       * Only chains with chain[1] < chain[n-1] are enumerated. So the point
+       * at position 1 must not be the largest one, and there must be a larger
+       * point left for the last position.
+       */
+      private boolean mirrorAllowed(int v) {
+        if (n < 3) return true;
+        if (depth == 1) return v < n - 1;
+        if (depth == n - 1) return v > chain[1];
+
+        for (int u = n - 1; u > chain[1]; u--)
+          if (!used[u] && u != v) return true;
+        return false;
+      }
+
+      /**
+       * @return true, if the edge from the end of the chain to v (and from v
+       *         to the start, if v is the last point) does not intersect
+       *         the chain. Same predicate as
+       *         OrderedListPolygon.edgesIntersect().
+       */
+      private boolean fits(int v) {
+        int last = chain[depth - 1];
+
+        if (depth >= 2 && collinear(chain[depth - 2], last, v)) return false;
+        for (int i = 0; i < depth - 2; i++)
+          if (intersect(chain[i], chain[i + 1], last, v)) return false;
+
+        if (depth == n - 1 && n >= 3) {
+          int first = chain[0];
+          if (collinear(last, v, first) || collinear(v, first, chain[1]))
+            return false;
+          for (int i = 1; i < depth - 1; i++)
+            if (intersect(chain[i], chain[i + 1], v, first)) return false;
+        }
+        return true;
+      }
+
+      /**
+       * Adjacent edges (a, b) and (b, c) only intersect if they are
+       * collinear.
+       */
+      private boolean collinear(int a, int b, int c) {
+        double denom =
+            (ys[c] - ys[b]) * (xs[b] - xs[a]) - (xs[c] - xs[b]) *
+                (ys[b] - ys[a]);
+        double numera =
+            (xs[c] - xs[b]) * (ys[a] - ys[b]) - (ys[c] - ys[b]) *
+                (xs[a] - xs[b]);
+        return MathUtils.doubleZero(denom) && MathUtils.doubleZero(numera);
+      }
+
+      /**
+       * Segment test of IntersectionUtils.intersect() including end points,
+       * for segments without common end point.
+       */
+      private boolean intersect(int a1, int a2, int b1, int b2) {
+        double denom =
+            (ys[b2] - ys[b1]) * (xs[a2] - xs[a1]) - (xs[b2] - xs[b1]) *
+                (ys[a2] - ys[a1]);
+        double numera =
+            (xs[b2] - xs[b1]) * (ys[a1] - ys[b1]) - (ys[b2] - ys[b1]) *
+                (xs[a1] - xs[b1]);
+        double numerb =
+            (xs[a2] - xs[a1]) * (ys[a1] - ys[b1]) -
+                (ys[a2] - ys[a1]) * (xs[a1] - xs[b1]);
+
+        if (MathUtils.doubleZero(denom))
+          return MathUtils.doubleZero(numera) && MathUtils.doubleZero(numerb);
+
+        double mua = numera / denom, mub = numerb / denom;
+        return mua >= 0 && mua <= 1 && mub >= 0 && mub <= 1;
+      }
+
+      private void addRejectedScene(int v) {
+        Scene scene = steps.newScene().addPoints(points, false);
+        for (int i = 0; i < depth - 1; i++)
+          scene.addLineSegment(new LineSegment(points.get(chain[i]),
+              points.get(chain[i + 1])), false);
+        scene.addLineSegment(new LineSegment(points.get(chain[depth - 1]),
+            points.get(v)), true);
+        scene.save();
       }
     }
   }
@@ -0,0 +1,155 @@
+package polygonsSWP.generators.other;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import polygonsSWP.geometry.Point;
+
+/**
+ * Cursor of the search of Enumerating Permute & Reject, so an interrupted
+ * search can be resumed. All chains before the cursor have been tested: the
+ * search continues with the chain of point indices in chain and tries the
+ * points from next on at the following position.
+ *
+ * The file also holds the point set, the cursor refers to its order.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class EnumerationCheckpoint
+{
+  public final List<Point> points;
+  public final int[] chain;
+  public final int next;
+  public final long iterations;
+  public final long backtracks;
+
+  public EnumerationCheckpoint(List<Point> points, int[] chain, int next,
+      long iterations, long backtracks) {
+    this.points = Collections.unmodifiableList(new ArrayList<Point>(points));
+    this.chain = chain.clone();
+    this.next = next;
+    this.iterations = iterations;
+    this.backtracks = backtracks;
+  }
+
+  /**
+   * Writes the checkpoint to a temporary file first and then replaces the
+   * given one, so a crash while writing keeps the previous checkpoint.
+   */
+  public void write(File file) throws IOException {
+    Properties p = new Properties();
+
+    StringBuilder sb = new StringBuilder();
+    for (Point point : points) {
+      if (sb.length() > 0) sb.append(';');
+      sb.append(Double.toString(point.x)).append(' ');
+      sb.append(Double.toString(point.y));
+    }
+    p.setProperty("points", sb.toString());
+
+    sb = new StringBuilder();
+    for (int i : chain) {
+      if (sb.length() > 0) sb.append(' ');
+      sb.append(i);
+    }
+    p.setProperty("chain", sb.toString());
+    p.setProperty("next", Integer.toString(next));
+    p.setProperty("iterations", Long.toString(iterations));
+    p.setProperty("backtracks", Long.toString(backtracks));
+
+    File tmp = new File(file.getPath() + ".tmp");
+    OutputStream os = new FileOutputStream(tmp);
+    try {
+      p.store(os, "Enumerating Permute & Reject checkpoint");
+    }
+    finally {
+      os.close();
+    }
+
+    if (!tmp.renameTo(file)) {
+      // Windows does not replace existing files.
+      file.delete();
+      if (!tmp.renameTo(file))
+        throw new IOException("EnumerationCheckpoint.write: cannot rename " +
+            tmp + " to " + file);
+    }
+  }
+
+  public static EnumerationCheckpoint read(File file) throws IOException {
+    Properties p = new Properties();
+    InputStream is = new FileInputStream(file);
+    try {
+      p.load(is);
+    }
+    finally {
+      is.close();
+    }
+
+    try {
+      List<Point> points = new ArrayList<Point>();
+      for (String point : get(p, "points").split(";")) {
+        String[] xy = point.trim().split(" ");
+        points.add(new Point(Double.parseDouble(xy[0]),
+            Double.parseDouble(xy[1])));
+      }
+
+      String[] indices = get(p, "chain").trim().split(" ");
+      int[] chain = new int[indices.length];
+      boolean[] used = new boolean[points.size()];
+      for (int i = 0; i < chain.length; i++) {
+        chain[i] = Integer.parseInt(indices[i]);
+        if (chain[i] < 0 || chain[i] >= points.size() || used[chain[i]])
+          throw corrupt(file, "invalid chain");
+        used[chain[i]] = true;
+      }
+      if (chain.length == 0 || chain[0] != 0 || chain.length >= points.size())
+        throw corrupt(file, "invalid chain");
+
+      // next == points.size() means all points have been tried.
+      int next = Integer.parseInt(get(p, "next"));
+      if (next < 0 || next > points.size())
+        throw corrupt(file, "invalid next");
+
+      long iterations = Long.parseLong(get(p, "iterations"));
+      long backtracks = Long.parseLong(get(p, "backtracks"));
+      if (iterations < 0 || backtracks < 0 || backtracks > iterations)
+        throw corrupt(file, "invalid statistics");
+
+      return new EnumerationCheckpoint(points, chain, next, iterations,
+          backtracks);
+    }
+    catch (NumberFormatException e) {
+      throw corrupt(file, e.getMessage());
+    }
+    catch (ArrayIndexOutOfBoundsException e) {
+      throw corrupt(file, "invalid points");
+    }
+  }
+
+  private static IOException corrupt(File file, String reason) {
+    return new IOException("EnumerationCheckpoint.read: corrupt checkpoint " +
+        file + ": " + reason);
+  }
+
+  private static String get(Properties p, String key) throws IOException {
+    String value = p.getProperty(key);
+    if (value == null)
+      throw new IOException("EnumerationCheckpoint.read: " + key +
+          " is missing");
+    return value;
+  }
+}
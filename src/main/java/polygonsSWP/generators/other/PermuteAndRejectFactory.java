@@ -1,18 +1,24 @@
 package polygonsSWP.generators.other;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 
 import polygonsSWP.data.History;
 import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.data.Scene;
 import polygonsSWP.generators.IllegalParameterizationException;
 import polygonsSWP.generators.PolygonGenerator;
 import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.geometry.LineSegment;
 import polygonsSWP.geometry.OrderedListPolygon;
 import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
 import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
 
 /**
  * (c) 2011-2012
@@ -56,7 +62,7 @@ public class PermuteAndRejectFactory
     implements PolygonGenerator
   {
 
-    private boolean doStop = false;
+    private volatile boolean doStop = false;
     private List<Point> points;
 
     final private History steps;
@@ -72,41 +78,88 @@ public class PermuteAndRejectFactory
     public Polygon generate() {
       // Initialize History
       if (steps != null) steps.clear();
-      
-      // Step 1: Generate polygon of given point set.
-      OrderedListPolygon p = new OrderedListPolygon(points);
-      
-
-      // Add a new scene and add the polygon.
-      if (steps != null)
-        steps.newScene().addPolygon(p, true).save();
 
       if(statistics != null)
         statistics.iterations = 0;
 
-      do {
-        // Step 3: Accept only simple polygons
-        if (p.isSimple()){
-          //if not in counterclockwise orientation, reverse orientation
-          if(p.isClockwise() == 1) p.reverse();
+      // The permutation is built in place, chain[0..k] is the part placed so
+      // far. Random is bound per thread, see AlgorithmRunner.
+      Point[] chain = points.toArray(new Point[points.size()]);
+      List<Point> coords = Arrays.asList(chain);
+      Random random = Random.create();
+
+      // Step 1: Try the given order first, then random permutations.
+      int rejected = place(coords, null);
+      while (rejected >= 0) {
+        if (steps != null) addRejectedScene(coords, rejected);
 
-          break;
-        }
+        if(statistics != null)
+          statistics.iterations++;
+
+        if (doStop) return null;
 
         // Step 2: Permute those n points to construct a Polygon
-        p.permute();
+        rejected = place(coords, random);
+      }
 
-        // Create a new scene for every polygon which is created.
-        if (steps != null)
-          steps.newScene().addPolygon(p, true).save();
+      // Step 3: Accept only simple polygons
+      OrderedListPolygon p =
+          new OrderedListPolygon(new ArrayList<Point>(coords));
+      //if not in counterclockwise orientation, reverse orientation
+      if(p.isClockwise() == 1) p.reverse();
 
-        if(statistics != null)
-          statistics.iterations++;
+      if (steps != null)
+        steps.newScene().addPolygon(p, true).save();
+
+      return p;
+    }
+
+    /**
+     * Builds a permutation of coords vertex by vertex (Fisher-Yates) and
+     * tests every new edge against the edges placed before, so most
+     * permutations are rejected after a few vertices. The accepted
+     * permutations are exactly the simple ones, i.e. the result is
+     * distributed as if the whole list had been shuffled and tested with
+     * isSimple().
+     *
+     * @param coords the points, permuted in place
+     * @param random generator for the permutation, null to keep the order
+     * @return -1, if coords is a simple polygon. Otherwise the index of the
+     *         edge which was rejected, the positions behind it are not yet
+     *         permuted.
+     */
+    private static int place(List<Point> coords, Random random) {
+      int n = coords.size();
+
+      for (int k = 0; k < n; k++) {
+        if (random != null && k < n - 1)
+          Collections.swap(coords, k, k + random.nextInt(n - k));
+
+        // Edge (k-1, k), plus the closing edge (n-1, 0) with the last point.
+        if (k >= 1 && intersectsChain(coords, k - 1)) return k - 1;
+      }
+      if (n >= 3 && intersectsChain(coords, n - 1)) return n - 1;
+
+      return -1;
+    }
 
-      } while (!doStop);
+    /**
+     * @return true, if edge(e, e+1) intersects any of the edges before it.
+     */
+    private static boolean intersectsChain(List<Point> coords, int e) {
+      for (int i = 0; i < e; i++)
+        if (OrderedListPolygon.edgesIntersect(coords, i, e)) return true;
+      return false;
+    }
 
-      if (doStop) return null;
-      else return p;
+    private void addRejectedScene(List<Point> coords, int rejected) {
+      Scene scene = steps.newScene().addPoints(coords, false);
+      for (int i = 0; i < rejected; i++)
+        scene.addLineSegment(
+            new LineSegment(coords.get(i), coords.get(i + 1)), false);
+      scene.addLineSegment(new LineSegment(coords.get(rejected),
+          coords.get((rejected + 1) % coords.size())), true);
+      scene.save();
     }
 
     @Override
@@ -10,7 +10,7 @@ import polygonsSWP.data.PolygonStatistics;
 import polygonsSWP.generators.IllegalParameterizationException;
 import polygonsSWP.generators.PolygonGenerator;
 import polygonsSWP.generators.PolygonGeneratorFactory;
-import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.PackedPolygon;
 import polygonsSWP.geometry.Point;
 import polygonsSWP.geometry.Polygon;
 import polygonsSWP.util.GeneratorUtils;
@@ -21,6 +21,9 @@ import polygonsSWP.util.MathUtils;
  * 
  * Found here: http://web.informatik.uni-bonn.de/I/GeomLab/RandomPolygon/index.html
  * 
+ * The polygon is built as a PackedPolygon, so large polygons need no Point
+ * per vertex once they are generated.
+ * 
  * (c) 2011-2012
  * @author Steve Dierker <dierker.steve@fu-berlin.de>
  * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
@@ -73,7 +76,7 @@ public class TwoPeasantsGeneratorFactory
 
     @Override
     public Polygon generate() {
-      List<Point> plist = new LinkedList<Point>();
+      PackedPolygon polygon = new PackedPolygon();
       
       if(steps != null)
         steps.newScene().addPoints(points, true).save();
@@ -86,42 +89,40 @@ public class TwoPeasantsGeneratorFactory
       Point last = points.get(points.size() - 1);
       
       // Add first point.
-      plist.add(first);
+      polygon.addPoint(first.x, first.y);
       
       // Add upper boundary.
-      addBoundary(points, first, last, plist);
+      addBoundary(points, first, last, polygon);
       
       // Add middle point.
-      plist.add(last);
+      polygon.addPoint(last.x, last.y);
       
       // Add lower boundary.
       Collections.reverse(points);
-      addBoundary(points, last, first, plist);      
-            
-      OrderedListPolygon olp = new OrderedListPolygon(plist);
+      addBoundary(points, last, first, polygon);      
       
       if(steps != null)
-        steps.newScene().addPolygon(olp, true).save();
+        steps.newScene().addPolygon(polygon, true).save();
       
-      return olp;
+      return polygon;
     }
 
     @Override
     public void stop() {
     }
     
-    private void addBoundary(List<Point> points, Point first, Point last, List<Point> plist) {
+    private void addBoundary(List<Point> points, Point first, Point last, PackedPolygon polygon) {
       for(int i = 1; i < points.size() - 1; i++) {
         Point p = points.get(i);
         int oriented = MathUtils.checkOrientation(first, last, p);
         switch(oriented) {
           case 1:
-            plist.add(p);
+            polygon.addPoint(p.x, p.y);
             if(steps != null) {
               steps.newScene()
                 .addPoint(first, true)
                 .addPoint(last, true)
-                .addPolygon(new OrderedListPolygon(plist), true)
+                .addPolygon(polygon.toOrderedListPolygon(), true)
                 .save();
             }
             break;
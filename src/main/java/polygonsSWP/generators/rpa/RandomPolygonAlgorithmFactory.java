@@ -117,7 +117,8 @@ public class RandomPolygonAlgorithmFactory
         Collections.reverse(polygon.getPoints());
       }
 
-      List<Point> polygonPoints = polygon.getPoints();
+      // Most of the time is spent shooting rays at the polygon.
+      polygon.setEdgeIndexed(true);
 
       if (steps != null) {
         Scene scene = steps.newScene();
@@ -233,7 +234,7 @@ public class RandomPolygonAlgorithmFactory
         }
 
         // 2.d add line segments VaVc and VcVb (delete line segment VaVb)
-        polygonPoints.add((indexVb + 1) % polygonPoints.size(), randomPoint);
+        polygon.addPoint((indexVb + 1) % polygon.size(), randomPoint);
 
         if (steps != null) {
           Scene scene = steps.newScene();
@@ -0,0 +1,297 @@
+package polygonsSWP.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import polygonsSWP.util.intersections.IntersectionMode;
+import polygonsSWP.util.intersections.LineSegmentIntersectionMode;
+
+
+/**
+ * Uniform grid over the edges of a closed chain of points. Edge i (from
+ * point i to point i+1) is stored in every cell it crosses, so an
+ * intersection query only tests the edges in the cells crossed by the query.
+ * The grid covers the bounding box of the points at construction time; the
+ * cells at the border extend to infinity, so points may be added anywhere.
+ *
+ * Unlike Polygon.intersect(), edges collinear with the query are only
+ * reported if they lie in a crossed cell, i.e. if they (nearly) overlap it.
+ *
+ * The index refers to the list it was built for and must be told about every
+ * insertion (see insert()); for other changes it has to be rebuilt. It should
+ * also be rebuilt once the number of points has grown a lot, see
+ * isOutgrown().
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+class EdgeIndex
+{
+  /** Cells are widened by this, to cover rounding errors. */
+  private static final double MARGIN = 1E-6;
+
+  private static final int ADD = 0, REMOVE = 1, COLLECT = 2;
+
+  private static final IntersectionMode INCLUDE_END_POINTS =
+      new LineSegmentIntersectionMode(true);
+
+  private final List<Point> points;
+  private final int initialSize;
+  private int size;
+
+  private final double minX, minY, cellWidth, cellHeight;
+  private final int cols, rows;
+  private final int[][] cells;
+  private final int[] cellSizes;
+
+  /* Bounding box of all points. */
+  private double boxMinX, boxMinY, boxMaxX, boxMaxY;
+
+  /* Candidates of the current query, marked in stamps to avoid duplicates. */
+  private int[] stamps;
+  private int stamp = 0;
+  private int[] candidates;
+  private int candidateCount;
+
+  EdgeIndex(List<Point> points) {
+    this.points = points;
+    this.size = initialSize = points.size();
+
+    boxMinX = boxMinY = Double.POSITIVE_INFINITY;
+    boxMaxX = boxMaxY = Double.NEGATIVE_INFINITY;
+    for (Point p : points)
+      extendBox(p);
+
+    int dim = Math.max(1, (int) Math.ceil(Math.sqrt(size)));
+    cols = rows = dim;
+    minX = size > 0 ? boxMinX : 0;
+    minY = size > 0 ? boxMinY : 0;
+    cellWidth = size > 0 && boxMaxX > boxMinX ? (boxMaxX - boxMinX) / cols : 1;
+    cellHeight = size > 0 && boxMaxY > boxMinY ? (boxMaxY - boxMinY) / rows : 1;
+
+    cells = new int[cols * rows][];
+    cellSizes = new int[cols * rows];
+    stamps = new int[Math.max(16, size)];
+    candidates = new int[Math.max(16, size)];
+
+    if (size >= 2)
+      for (int i = 0; i < size; i++)
+        updateEdge(i, ADD);
+  }
+
+  /**
+   * @return true, if the index is up to date for the given list.
+   */
+  boolean isValidFor(List<Point> points) {
+    return this.points == points && size == points.size();
+  }
+
+  /**
+   * @return true, if the grid has become too coarse for the number of
+   *         points, i.e. it has doubled since construction.
+   */
+  boolean isOutgrown() {
+    return size > 2 * Math.max(initialSize, 8);
+  }
+
+  /**
+   * Updates the index after a point has been inserted into the list at the
+   * given index, splitting the edge between its neighbours.
+   */
+  void insert(int index) {
+    int n = points.size();
+    assert n == size + 1;
+
+    int prev = (index - 1 + n) % n, next = (index + 1) % n;
+    Point p = points.get(index);
+    extendBox(p);
+
+    if (size >= 2) {
+      // Remove the split edge (old index of prev) before renumbering.
+      int split = (index - 1 + size) % size;
+      walk(points.get(prev), points.get(next), split, REMOVE);
+
+      for (int c = 0; c < cells.length; c++) {
+        int[] cell = cells[c];
+        for (int k = 0; k < cellSizes[c]; k++)
+          if (cell[k] >= index) cell[k]++;
+      }
+    }
+
+    size = n;
+    if (size >= 2) {
+      updateEdge(prev, ADD);
+      updateEdge(index, ADD);
+    }
+  }
+
+  /**
+   * Same as Polygon.intersect() for the line (segment, ray) through a and b,
+   * see also class comment. Results are in the same order.
+   */
+  List<Point[]> intersect(Point a, Point b, IntersectionMode im) {
+    List<Point[]> intersections = new ArrayList<Point[]>();
+    if (size < 2) return intersections;
+
+    // Clip the query to the bounding box of the points, the part outside
+    // cannot intersect any edge. The mode tells whether the query extends
+    // beyond a (lines) and beyond b (rays, lines).
+    double dx = b.x - a.x, dy = b.y - a.y;
+    double[] t = { im.test(-1) ? Double.NEGATIVE_INFINITY : 0,
+        im.test(2) ? Double.POSITIVE_INFINITY : 1 };
+    if (dx == 0 && dy == 0) t[0] = t[1] = 0;
+
+    if (!clip(a.x, dx, boxMinX - MARGIN, boxMaxX + MARGIN, t) ||
+        !clip(a.y, dy, boxMinY - MARGIN, boxMaxY + MARGIN, t))
+      return intersections;
+
+    if (++stamp == 0) {
+      Arrays.fill(stamps, 0);
+      stamp = 1;
+    }
+    if (stamps.length < size) stamps = new int[2 * size];
+    candidateCount = 0;
+    walk(a.x + t[0] * dx, a.y + t[0] * dy, a.x + t[1] * dx, a.y + t[1] * dy,
+        -1, COLLECT);
+
+    // Same order as Polygon.intersect(): the closing edge first.
+    Arrays.sort(candidates, 0, candidateCount);
+    if (candidateCount > 0 && candidates[candidateCount - 1] == size - 1) {
+      Polygon.intersectEdge(points.get(size - 1), points.get(0), a, b,
+          INCLUDE_END_POINTS, im, intersections);
+      candidateCount--;
+    }
+    for (int k = 0; k < candidateCount; k++) {
+      int e = candidates[k];
+      Polygon.intersectEdge(points.get(e), points.get(e + 1), a, b,
+          INCLUDE_END_POINTS, im, intersections);
+    }
+
+    return intersections;
+  }
+
+  /**
+   * Liang-Barsky clipping of p + t * d to [min, max] in one dimension.
+   */
+  private static boolean clip(double p, double d, double min, double max,
+      double[] t) {
+    if (d == 0) return p >= min && p <= max;
+
+    double t0 = (min - p) / d, t1 = (max - p) / d;
+    if (t0 > t1) {
+      double tmp = t0;
+      t0 = t1;
+      t1 = tmp;
+    }
+    t[0] = Math.max(t[0], t0);
+    t[1] = Math.min(t[1], t1);
+    return t[0] <= t[1];
+  }
+
+  private void updateEdge(int edge, int op) {
+    walk(points.get(edge), points.get((edge + 1) % size), edge, op);
+  }
+
+  private void walk(Point a, Point b, int edge, int op) {
+    walk(a.x, a.y, b.x, b.y, edge, op);
+  }
+
+  /**
+   * Visits all cells crossed by segment (x0, y0), (x1, y1), column by
+   * column.
+   */
+  private void walk(double x0, double y0, double x1, double y1, int edge,
+      int op) {
+    double xmin = Math.min(x0, x1), xmax = Math.max(x0, x1);
+    int c0 = col(xmin - MARGIN), c1 = col(xmax + MARGIN);
+    double dx = x1 - x0, dy = y1 - y0;
+
+    for (int c = c0; c <= c1; c++) {
+      // Part of the segment in this column.
+      double lo = (c == 0) ? xmin : Math.max(xmin, minX + c * cellWidth - MARGIN);
+      double hi = (c == cols - 1) ? xmax : Math.min(xmax, minX + (c + 1) * cellWidth + MARGIN);
+      if (lo > hi) lo = hi = (lo > xmax) ? xmax : xmin;
+
+      double ylo, yhi;
+      if (dx == 0) {
+        ylo = Math.min(y0, y1);
+        yhi = Math.max(y0, y1);
+      }
+      else {
+        double t0 = clamp((lo - x0) / dx), t1 = clamp((hi - x0) / dx);
+        ylo = y0 + t0 * dy;
+        yhi = y0 + t1 * dy;
+        if (ylo > yhi) {
+          double tmp = ylo;
+          ylo = yhi;
+          yhi = tmp;
+        }
+      }
+
+      int r1 = row(yhi + MARGIN);
+      for (int r = row(ylo - MARGIN); r <= r1; r++)
+        visit(r * cols + c, edge, op);
+    }
+  }
+
+  private void visit(int cell, int edge, int op) {
+    if (op == ADD) {
+      int[] list = cells[cell];
+      if (list == null) list = cells[cell] = new int[4];
+      else if (cellSizes[cell] == list.length)
+        list = cells[cell] = Arrays.copyOf(list, 2 * list.length);
+      list[cellSizes[cell]++] = edge;
+    }
+    else if (op == REMOVE) {
+      int[] list = cells[cell];
+      for (int k = 0; k < cellSizes[cell]; k++) {
+        if (list[k] == edge) {
+          list[k] = list[--cellSizes[cell]];
+          break;
+        }
+      }
+    }
+    else {
+      int[] list = cells[cell];
+      for (int k = 0; k < cellSizes[cell]; k++) {
+        int e = list[k];
+        if (stamps[e] == stamp) continue;
+        stamps[e] = stamp;
+        if (candidateCount == candidates.length)
+          candidates = Arrays.copyOf(candidates, 2 * candidates.length);
+        candidates[candidateCount++] = e;
+      }
+    }
+  }
+
+  private void extendBox(Point p) {
+    boxMinX = Math.min(boxMinX, p.x);
+    boxMinY = Math.min(boxMinY, p.y);
+    boxMaxX = Math.max(boxMaxX, p.x);
+    boxMaxY = Math.max(boxMaxY, p.y);
+  }
+
+  private int col(double x) {
+    return clampIndex(Math.floor((x - minX) / cellWidth), cols);
+  }
+
+  private int row(double y) {
+    return clampIndex(Math.floor((y - minY) / cellHeight), rows);
+  }
+
+  private static int clampIndex(double i, int n) {
+    if (!(i >= 0)) return 0;
+    if (i >= n) return n - 1;
+    return (int) i;
+  }
+
+  private static double clamp(double t) {
+    return t < 0 ? 0 : (t > 1 ? 1 : t);
+  }
+}
@@ -6,6 +6,9 @@ import java.util.List;
 
 import polygonsSWP.util.Random;
 import polygonsSWP.util.MathUtils;
+import polygonsSWP.util.intersections.IntersectionMode;
+import polygonsSWP.util.intersections.IntersectionUtils;
+import polygonsSWP.util.intersections.LineSegmentIntersectionMode;
 
 
 /**
@@ -26,9 +29,16 @@ import polygonsSWP.util.MathUtils;
 public class OrderedListPolygon
   extends Polygon
 {
+  private static final IntersectionMode INCLUDE_END_POINTS =
+      new LineSegmentIntersectionMode(true);
+
   List<Point> _coords;
   List<Triangle> _triangles;
 
+  /* Edge index for intersect(), see setEdgeIndexed(). */
+  private boolean _indexed = false;
+  private EdgeIndex _index;
+
   /**
    * Generates an empty polygon object which will contain no statistics or
    * history.
@@ -54,6 +64,7 @@ public class OrderedListPolygon
    */
   public void setPoints(List<Point> coords) {
     _coords = coords;
+    _index = null;
   }
 
   /**
@@ -62,7 +73,23 @@ public class OrderedListPolygon
    * @param p The new point.
    */
   public void addPoint(Point p) {
-    _coords.add(p);
+    addPoint(_coords.size(), p);
+  }
+
+  /**
+   * Inserts a point at the given position, splitting the edge between its
+   * neighbours. Keeps the edge index up to date.
+   * 
+   * @param index position of the new point.
+   * @param p The new point.
+   */
+  public void addPoint(int index, Point p) {
+    if (_index != null && !_index.isValidFor(_coords)) _index = null;
+    _coords.add(index, p);
+    if (_index != null) {
+      _index.insert(index);
+      if (_index.isOutgrown()) _index = null;
+    }
   }
 
   /**
@@ -72,6 +99,33 @@ public class OrderedListPolygon
    */
   public void deletePoint(Point p) {
     _coords.remove(p);
+    _index = null;
+  }
+
+  /**
+   * Enables or disables a grid index over the edges, used by intersect().
+   * Worthwhile if many intersection queries are made while the polygon grows
+   * by addPoint(). The index is rebuilt after other changes made through this
+   * class; changes made directly to getPoints() are only detected if they
+   * change the number of points.
+   * 
+   * With the index, edges collinear with but far away from the query are not
+   * reported as coincident. Intersection points are the same and in the same
+   * order.
+   */
+  public void setEdgeIndexed(boolean indexed) {
+    _indexed = indexed;
+    _index = null;
+  }
+
+  @Override
+  protected List<Point[]> abstractIntersect(Point a, Point b,
+      IntersectionMode im) {
+    if (!_indexed) return super.abstractIntersect(a, b, im);
+
+    if (_index == null || !_index.isValidFor(_coords))
+      _index = new EdgeIndex(_coords);
+    return _index.intersect(a, b, im);
   }
 
   /**
@@ -80,7 +134,8 @@ public class OrderedListPolygon
    * is very likely to be complex.
    */
   public void permute() {
-    Collections.shuffle(_coords);
+    Collections.shuffle(_coords, Random.create());
+    _index = null;
   }
 
   /**
@@ -88,6 +143,17 @@ public class OrderedListPolygon
    */
   public void reverse() {
     Collections.reverse(_coords);
+    _index = null;
+  }
+
+  /**
+   * Algorithms for the simplicity test and the intersection search.
+   */
+  public enum IntersectionAlgorithm {
+    /** Tests every pair of edges, O(n^2). Kept as reference. */
+    NAIVE,
+    /** Shamos-Hoey and Bentley-Ottmann sweep, O((n + k) log n). */
+    SWEEP_LINE
   }
 
   /**
@@ -96,7 +162,19 @@ public class OrderedListPolygon
    * @return true, if the polygon is simple, otherwise false.
    */
   public boolean isSimple() {
-    return findIntersections().size() == 0;
+    return isSimple(IntersectionAlgorithm.SWEEP_LINE);
+  }
+
+  /**
+   * @param algorithm algorithm to use. The sweep line stops at the first
+   *          intersection found.
+   * @return true, if the polygon is simple, otherwise false.
+   */
+  public boolean isSimple(IntersectionAlgorithm algorithm) {
+    if (algorithm == IntersectionAlgorithm.SWEEP_LINE &&
+        SweepLine.isApplicable(_coords)) return SweepLine.isSimple(_coords);
+
+    return findIntersections(IntersectionAlgorithm.NAIVE).size() == 0;
   }
 
   /**
@@ -107,62 +185,73 @@ public class OrderedListPolygon
    *         edge(y,y+1)
    */
   public List<Integer[]> findIntersections() {
+    return findIntersections(IntersectionAlgorithm.SWEEP_LINE);
+  }
+
+  /**
+   * Calculates the set of all intersections found in the polygon, see above.
+   * Both algorithms return the intersections [x,y] ordered by x, then by y.
+   * Unlike the naive approach, the sweep line reports collinear edges only if
+   * they overlap.
+   * 
+   * @param algorithm algorithm to use.
+   */
+  public List<Integer[]> findIntersections(IntersectionAlgorithm algorithm) {
+    if (algorithm == IntersectionAlgorithm.SWEEP_LINE &&
+        SweepLine.isApplicable(_coords))
+      return SweepLine.findIntersections(_coords);
+
     /*
      * Remark: The approach used here is very naive. As Held writes in his
      * paper, "The simplicity test for a polygon is not done in linear time;
      * rather we implemented a straightforward quadratic approach. (As we will
      * see later this has no influence on the test results.)", I also decided to
-     * let alone [Cha91] for now and simply check for crossing lines. However,
-     * since we're going to implement polygon triangulation anyway, we should
-     * definitely come back here later and improve this. Maybe, instead of the
-     * proposed [Cha91], we could also use the Bentley-Ottmann algorithm, see
-     * http://en.wikipedia.org/wiki/Bentley%E2%80%93Ottmann_algorithm for
-     * explanation.
+     * let alone [Cha91] for now and simply check for crossing lines. The
+     * Bentley-Ottmann algorithm is implemented in SweepLine, this is kept as
+     * reference.
      */
 
     List<Integer[]> retval = new ArrayList<Integer[]>();
     int size = _coords.size();
-    Point[] isect = new Point[1];
-    
-    LineSegment a = new LineSegment(new Point(0,0),new Point(0,0));
-    LineSegment b = new LineSegment(new Point(0,0),new Point(0,0));
-    
-    for (int i = 0; i < size - 1; i++) {
-      a._a = _coords.get(i);
-      a._b = _coords.get(i + 1);
 
-      // Then test the remaining line segments for intersections
+    for (int i = 0; i < size - 1; i++) {
+      // Test the remaining line segments for intersections
       for (int j = i + 1; j < size; j++) {
-        b._a = _coords.get(j);
-        b._b = _coords.get((j + 1) % size);
-
-        isect = a.intersect(b);
-        if (isect != null) {
+        if (edgesIntersect(_coords, i, j)) retval.add(new Integer[] { i, j });
+      }
+    }
 
-          boolean coincident;
-          boolean ab = false;
-          boolean ba = false;
+    return retval;
+  }
 
-          // Check for coincidence (--> intersection)
-          if (!(coincident = (isect.length == 0))) {
+  /**
+   * Tests whether edge(i,i+1) and edge(j,j+1) of a closed chain of points
+   * intersect. Coincident edges intersect, a shared endpoint does not count
+   * as intersection.
+   * 
+   * @param coords ordered list of points
+   * @param i index of first edge
+   * @param j index of second edge, i < j
+   * @return true, if the edges intersect.
+   */
+  public static boolean edgesIntersect(List<Point> coords, int i, int j) {
+    int size = coords.size();
+    Point ai = coords.get(i), bi = coords.get((i + 1) % size);
+    Point aj = coords.get(j), bj = coords.get((j + 1) % size);
 
-            // Check whether the intersection is a shared endpoint (--> no
-            // intersection)
-            ab =
-                isect[0].equals(_coords.get(i)) &&
-                    _coords.get(i).equals(_coords.get((j + 1) % size));
-            ba =
-                isect[0].equals(_coords.get(j)) &&
-                    _coords.get(j).equals(_coords.get(i + 1));
+    Point[] isect = IntersectionUtils.intersect(ai, bi, aj, bj,
+        INCLUDE_END_POINTS, INCLUDE_END_POINTS);
+    if (isect == null) return false;
 
-          }
+    // Check for coincidence (--> intersection)
+    if (isect.length == 0) return true;
 
-          if (coincident || !(ab || ba)) retval.add(new Integer[] { i, j });
-        }
-      }
-    }
+    // Check whether the intersection is a shared endpoint (--> no
+    // intersection)
+    boolean ab = isect[0].equals(ai) && ai.equals(bj);
+    boolean ba = isect[0].equals(aj) && aj.equals(bi);
 
-    return retval;
+    return !(ab || ba);
   }
 
   /**
@@ -0,0 +1,343 @@
+package polygonsSWP.geometry;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+import polygonsSWP.util.MathUtils;
+import polygonsSWP.util.intersections.IntersectionMode;
+
+
+/**
+ * Implementation of Polygon storing the vertices in two primitive arrays xs
+ * and ys instead of one Point object per vertex. The geometric operations
+ * work directly on the arrays.
+ *
+ * getPoints() returns a view on the arrays. The points returned by the view
+ * are copies, changing their coordinates has no effect on the polygon; use
+ * set() instead. The view supports add() and remove(), so an
+ * OrderedListPolygon created by toOrderedListPolygon() can be used (and
+ * modified) like any other, while sharing the storage of this polygon.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class PackedPolygon
+  extends Polygon
+{
+  private double[] xs;
+  private double[] ys;
+  private int n;
+
+  private final PointList points = new PointList();
+
+  /**
+   * Generates an empty polygon.
+   */
+  public PackedPolygon() {
+    this(new double[10], new double[10], 0);
+  }
+
+  /**
+   * Generates a polygon of the first n coordinates of the given arrays. The
+   * arrays are used, not copied.
+   */
+  public PackedPolygon(double[] xs, double[] ys, int n) {
+    if (xs.length < n || ys.length < n)
+      throw new IllegalArgumentException("arrays shorter than n");
+
+    this.xs = xs;
+    this.ys = ys;
+    this.n = n;
+  }
+
+  /**
+   * Converts the given polygon. If its points are a view of a PackedPolygon
+   * (e.g. created by toOrderedListPolygon()), that PackedPolygon is returned
+   * without copying. Otherwise the coordinates are copied.
+   */
+  public static PackedPolygon valueOf(Polygon polygon) {
+    if (polygon instanceof PackedPolygon) return (PackedPolygon) polygon;
+
+    List<Point> list = polygon.getPoints();
+    if (list instanceof PointList) return ((PointList) list).owner();
+
+    int size = list.size();
+    double[] xs = new double[size], ys = new double[size];
+    for (int i = 0; i < size; i++) {
+      Point p = list.get(i);
+      xs[i] = p.x;
+      ys[i] = p.y;
+    }
+    return new PackedPolygon(xs, ys, size);
+  }
+
+  /**
+   * @return an OrderedListPolygon sharing the coordinates of this polygon.
+   */
+  public OrderedListPolygon toOrderedListPolygon() {
+    return new OrderedListPolygon(points);
+  }
+
+  /**
+   * @return view on the coordinates, see class comment.
+   */
+  @Override
+  public List<Point> getPoints() {
+    return points;
+  }
+
+  @Override
+  public Point getPoint(int pos) {
+    checkIndex(pos, n);
+    return new Point(xs[pos], ys[pos]);
+  }
+
+  public double getX(int i) {
+    checkIndex(i, n);
+    return xs[i];
+  }
+
+  public double getY(int i) {
+    checkIndex(i, n);
+    return ys[i];
+  }
+
+  /**
+   * Sets the coordinates of vertex i.
+   */
+  public void set(int i, double x, double y) {
+    checkIndex(i, n);
+    xs[i] = x;
+    ys[i] = y;
+  }
+
+  /**
+   * Adds a vertex to the end of the list.
+   */
+  public void addPoint(double x, double y) {
+    ensureCapacity(n + 1);
+    xs[n] = x;
+    ys[n] = y;
+    n++;
+  }
+
+  @Override
+  public int size() {
+    return n;
+  }
+
+  @Override
+  public PackedPolygon clone() {
+    return new PackedPolygon(Arrays.copyOf(xs, n), Arrays.copyOf(ys, n), n);
+  }
+
+  @Override
+  public Point createRandomPoint() {
+    return toOrderedListPolygon().createRandomPoint();
+  }
+
+  @Override
+  public double getCircumference() {
+    double circumference = 0.0;
+
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      double x = xs[i] - xs[j], y = ys[i] - ys[j];
+      circumference += Math.sqrt(x * x + y * y);
+    }
+
+    return circumference;
+  }
+
+  @Override
+  public double getSurfaceArea() {
+    assert (n >= 3);
+
+    double result = 0.0;
+    for (int p = n - 1, q = 0; q < n; p = q++) {
+      result += xs[p] * ys[q] - xs[q] * ys[p];
+    }
+    return result / 2.0;
+  }
+
+  @Override
+  public boolean containsPoint(Point p, boolean onLine) {
+    boolean isInside = false;
+    double px = p.x, py = p.y;
+
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      double xi = xs[i], yi = ys[i], xj = xs[j], yj = ys[j];
+
+      // pnpoly, see Polygon.containsPoint()
+      if ((yi - py > MathUtils.EPSILON) != (yj - py > MathUtils.EPSILON)) {
+        if (px - ((xj - xi) * (py - yi) / (yj - yi) + xi) < MathUtils.EPSILON) {
+          isInside = !isInside;
+        }
+      }
+
+      if (segmentContains(xj, yj, xi, yi, px, py)) { return onLine; }
+    }
+    return isInside;
+  }
+
+  /**
+   * Same as LineSegment.containsPoint() for segment (ax, ay), (bx, by).
+   */
+  private static boolean segmentContains(double ax, double ay, double bx,
+      double by, double px, double py) {
+    double apx = px - ax, apy = py - ay;
+    double abx = bx - ax, aby = by - ay;
+
+    double lambda1 = abx == 0 ? 0 : (apx / abx);
+    double lambda2 = aby == 0 ? 0 : (apy / aby);
+
+    // catch horizontal lines
+    if (MathUtils.doubleZero(aby))
+      return MathUtils.doubleZero(apy) && lambda1 >= 0 && lambda1 <= 1;
+
+    // catch vertical lines
+    if (MathUtils.doubleZero(abx))
+      return MathUtils.doubleZero(apx) && lambda2 >= 0 && lambda2 <= 1;
+
+    return MathUtils.doubleEquals(lambda1, lambda2) && lambda1 >= 0 &&
+        lambda1 <= 1;
+  }
+
+  @Override
+  public int isClockwise() {
+    if (n < 3) return 0;
+
+    double doubleArea = 0;
+    for (int j = 0, i = n - 1; j < n; i = j++) {
+      doubleArea += (xs[j] - xs[i]) * (ys[j] + ys[i]);
+    }
+
+    if (doubleArea < 0) return -1;
+    if (doubleArea > 0) return 1;
+    return 0;
+  }
+
+  /**
+   * Same as Polygon.abstractIntersect(), but computes the intersection of
+   * each edge directly on the arrays (see IntersectionUtils.intersect()).
+   * Points are only created for the result.
+   */
+  @Override
+  protected List<Point[]> abstractIntersect(Point a, Point b,
+      IntersectionMode im) {
+    List<Point[]> intersections = new ArrayList<Point[]>();
+    double bx = b.x - a.x, by = b.y - a.y;
+
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      double xj = xs[j], yj = ys[j];
+      double ex = xs[i] - xj, ey = ys[i] - yj;
+
+      double denom = by * ex - bx * ey;
+      double numera = bx * (yj - a.y) - by * (xj - a.x);
+      double numerb = ex * (yj - a.y) - ey * (xj - a.x);
+
+      if (MathUtils.doubleZero(numera) && MathUtils.doubleZero(numerb) &&
+          MathUtils.doubleZero(denom)) {
+        // Coincident with polygon edge.
+        intersections.add(new Point[] { null, getPoint(j), getPoint(i) });
+        continue;
+      }
+
+      if (MathUtils.doubleZero(denom)) continue;
+
+      double mua = numera / denom;
+      double mub = numerb / denom;
+      if (!(mua >= 0 && mua <= 1) || !im.test(mub)) continue;
+
+      Point isec = new Point(xj + mua * ex, yj + mua * ey);
+      if (isec.equals(getPoint(j))) {
+        // Intersection on vertex of polygon.
+        intersections.add(new Point[] { isec, null, null });
+      }
+      else if (!isec.equals(getPoint(i))) {
+        // Real intersection.
+        intersections.add(new Point[] { isec, getPoint(j), getPoint(i) });
+      }
+    }
+
+    return intersections;
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity <= xs.length && capacity <= ys.length) return;
+
+    int length = Math.max(capacity, xs.length + (xs.length >> 1) + 1);
+    xs = Arrays.copyOf(xs, length);
+    ys = Arrays.copyOf(ys, length);
+  }
+
+  private static void checkIndex(int i, int size) {
+    if (i < 0 || i >= size)
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + size);
+  }
+
+  /**
+   * List view on the coordinates.
+   */
+  private class PointList
+    extends AbstractList<Point>
+    implements RandomAccess
+  {
+    PackedPolygon owner() {
+      return PackedPolygon.this;
+    }
+
+    @Override
+    public Point get(int index) {
+      return getPoint(index);
+    }
+
+    @Override
+    public int size() {
+      return n;
+    }
+
+    @Override
+    public Point set(int index, Point p) {
+      Point old = getPoint(index);
+      xs[index] = p.x;
+      ys[index] = p.y;
+      return old;
+    }
+
+    @Override
+    public void add(int index, Point p) {
+      checkIndex(index, n + 1);
+      ensureCapacity(n + 1);
+      System.arraycopy(xs, index, xs, index + 1, n - index);
+      System.arraycopy(ys, index, ys, index + 1, n - index);
+      xs[index] = p.x;
+      ys[index] = p.y;
+      n++;
+      modCount++;
+    }
+
+    @Override
+    public Point remove(int index) {
+      Point old = getPoint(index);
+      System.arraycopy(xs, index + 1, xs, index, n - index - 1);
+      System.arraycopy(ys, index + 1, ys, index, n - index - 1);
+      n--;
+      modCount++;
+      return old;
+    }
+
+    @Override
+    public void clear() {
+      n = 0;
+      modCount++;
+    }
+  }
+}
@@ -137,40 +137,51 @@ public abstract class Polygon
     return abstractIntersect(l._a, l._b, new LineIntersectionMode());
   }
 
-  final private List<Point[]> abstractIntersect(Point a, Point b,
+  /**
+   * Intersects all edges with the line (segment, ray) through a and b, see
+   * above. Subclasses may override this with a faster implementation.
+   */
+  protected List<Point[]> abstractIntersect(Point a, Point b,
       IntersectionMode im) {
     List<Point[]> intersections = new ArrayList<Point[]>();
     List<Point> points = getPoints();
     IntersectionMode imv = new LineSegmentIntersectionMode(true);
     for (int i = 0, j = points.size() - 1; i < points.size(); j = i++) {
-      Point vj = points.get(j);
-      Point vi = points.get(i);
-      Point[] isec = IntersectionUtils.intersect(vj, vi, a, b, imv, im);
-      if (isec != null) {
-        if (isec.length != 0) {
-
-          if (isec[0].equals(vj)) {
-            // Intersection on vertex of polygon.
-            intersections.add(new Point[] { isec[0], null, null });
-          }
-          else if (!isec[0].equals(vi)) {
-            // If isec[0] == vi, Intersection is a vertex of polygon, too,
-            // but we add it only once.
-
-            // Real intersection.
-            intersections.add(new Point[] { isec[0], vj, vi });
-          }
+      intersectEdge(points.get(j), points.get(i), a, b, imv, im, intersections);
+    }
+
+    return intersections;
+
+  }
 
+  /**
+   * Intersects edge vj, vi with the line (segment, ray) through a and b and
+   * adds the result to intersections, see intersect().
+   */
+  static void intersectEdge(Point vj, Point vi, Point a, Point b,
+      IntersectionMode imv, IntersectionMode im, List<Point[]> intersections) {
+    Point[] isec = IntersectionUtils.intersect(vj, vi, a, b, imv, im);
+    if (isec != null) {
+      if (isec.length != 0) {
+
+        if (isec[0].equals(vj)) {
+          // Intersection on vertex of polygon.
+          intersections.add(new Point[] { isec[0], null, null });
         }
-        else {
-          // Coincident with polygon edge.
-          intersections.add(new Point[] { null, vj, vi });
+        else if (!isec[0].equals(vi)) {
+          // If isec[0] == vi, Intersection is a vertex of polygon, too,
+          // but we add it only once.
+
+          // Real intersection.
+          intersections.add(new Point[] { isec[0], vj, vi });
         }
+
+      }
+      else {
+        // Coincident with polygon edge.
+        intersections.add(new Point[] { null, vj, vi });
       }
     }
-
-    return intersections;
-
   }
 
   /**
@@ -1,12 +1,16 @@
 package polygonsSWP.geometry;
 
-import java.util.ArrayList;
-import java.util.Collections;
+import java.util.AbstractList;
+import java.util.Arrays;
 import java.util.List;
 
 import polygonsSWP.util.MathUtils;
 
 /**
+ * Convex hull for SteadyGrowth, in counter-clockwise order beginning with the
+ * smallest point. Points are inserted in place, the last insertion can be
+ * reverted by undo() without copying the hull.
+ *
  * (c) 2011-2012
  * @author Steve Dierker <dierker.steve@fu-berlin.de>
  * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
@@ -20,16 +24,42 @@ public class SteadyGrowthConvexHull extends Polygon
 
   public static int seqSearches = 0;
 
+  /**
+   * Hulls with at least this many points are searched by binary search,
+   * smaller ones sequentially.
+   */
+  public static int binarySearchMinSize = 8;
+
   public SteadyGrowthConvexHull() {
   }
 
-  private ArrayList<Point> points = new ArrayList<Point>();
+  private Point[] vertices = new Point[16];
+  private int size = 0;
+
+  /* Vertices from undoFrom on before the last insertion, see undo(). */
+  private Point[] undoVertices = new Point[16];
+  private int undoFrom = 0, undoSize = 0;
+
+  private final List<Point> points = new AbstractList<Point>() {
+    @Override
+    public Point get(int index) {
+      if(index < 0 || index >= size)
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+      return vertices[index];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  };
 
   @Override
-  @SuppressWarnings("unchecked")
   public Polygon clone() {
     SteadyGrowthConvexHull hull = new SteadyGrowthConvexHull();
-    hull.points = (ArrayList<Point>) this.points.clone();
+    hull.vertices = Arrays.copyOf(vertices, vertices.length);
+    hull.size = size;
+    hull.undoFrom = hull.undoSize = size;
     return hull;
   }
 
@@ -38,15 +68,45 @@ public class SteadyGrowthConvexHull extends Polygon
   }
 
   public int addPointReturnAndInsertIndex(Point point) {
+    // nothing to undo, if the hull does not change
+    undoFrom = undoSize = size;
+
     if(point == null) return -1;
 
     // wenn der punkt innerhalb convexen huelle ist,
     // dann brauchen wir nichts aktualisieren
-    if (containsPoint(point, true)) return -1;
+    if (containsPointOnLine(point)) return -1;
 
     return addPoint0(point);
   }
 
+  /**
+   * Reverts the last call of addPoint(). Only one insertion can be undone,
+   * further calls have no effect.
+   */
+  public void undo() {
+    System.arraycopy(undoVertices, 0, vertices, undoFrom, undoSize - undoFrom);
+    resize(undoSize);
+    undoFrom = size;
+  }
+
+  /**
+   * Saves the vertices from the given index on, which are about to change.
+   */
+  private void saveForUndo(int from) {
+    if(undoVertices.length < vertices.length)
+      undoVertices = new Point[vertices.length];
+
+    System.arraycopy(vertices, from, undoVertices, 0, size - from);
+    undoFrom = from;
+    undoSize = size;
+  }
+
+  private void resize(int newSize) {
+    if(newSize < size) Arrays.fill(vertices, newSize, size, null);
+    size = newSize;
+  }
+
   /**
    * Concave:
    * Segment curr, base intersects the interior of the confex hull
@@ -61,9 +121,9 @@ public class SteadyGrowthConvexHull extends Polygon
   private enum State{ CONCAVE, REFLEX, SUPPORTING, UNDEFINED};
 
   private State getState(int currIndex, Point base){
-    Point curr = points.get(currIndex);
-    Point prev = points.get((currIndex + points.size() - 1) % points.size());
-    Point next = points.get((currIndex + 1) % points.size());
+    Point curr = vertices[currIndex];
+    Point prev = vertices[(currIndex + size - 1) % size];
+    Point next = vertices[(currIndex + 1) % size];
     int prevOrients = MathUtils.checkOrientation(base, curr, prev);
     int nextOrients = MathUtils.checkOrientation(base, curr, next);
 
@@ -83,8 +143,8 @@ public class SteadyGrowthConvexHull extends Polygon
   private boolean updateCollinears(Point base, int[] supports, int lastIndex, int curr){
     if(lastIndex == 0) return true;
 
-    Point supportOld = points.get(supports[lastIndex - 1]);
-    Point supportNew = points.get(curr);
+    Point supportOld = vertices[supports[lastIndex - 1]];
+    Point supportNew = vertices[curr];
 
     if(supportOld.equals(supportNew))
       return false;
@@ -127,82 +187,217 @@ public class SteadyGrowthConvexHull extends Polygon
     return supports;
   }
 
-  private int[] getSupports(Point base){
-    return supportsBySeqSearch(base);
-  }
-
-  private int splice(int leftSupport, int rightSupport, Point base){
-    int distance = (rightSupport + points.size() - leftSupport) % points.size();
-    int newSize = points.size() - distance + 2;
+  /**
+   * Finds the same supports as supportsBySeqSearch() in O(log n): the edges
+   * visible from base (base lies right of them) form a chain, which is found
+   * by binary search. Its end points are the supports, the vertices next to
+   * them are checked for collinear supports as in the sequential search.
+   *
+   * @return the supports, null if the search was inconclusive because of
+   *         collinear points.
+   */
+  private int[] supportsByBinarySearch(Point base) {
+    boolean firstVisible = isVisible(0, base),
+            lastVisible  = isVisible(size - 1, base);
+
+    // the first and last edge of the visible chain
+    int from, to;
+
+    if(firstVisible && lastVisible) {
+      // point 0 is inside the chain, we need an invisible edge to split it:
+      // the edge opposite of base as seen from point 0
+      Point first = vertices[0];
+      int anchor = fanIndex(new Point(2 * first.x - base.x, 2 * first.y - base.y));
+      if(anchor < 0 || isVisible(anchor, base)) return null;
+
+      from = transition(anchor, size - 1, base);
+      to   = transition(0, anchor, base) - 1;
+    }
+    else if(firstVisible) {
+      from = 0;
+      to   = transition(0, size - 1, base) - 1;
+    }
+    else if(lastVisible) {
+      from = transition(0, size - 1, base);
+      to   = size - 1;
+    }
+    else {
+      // the chain lies within the fan around point 0
+      int anchor = fanIndex(base);
+      if(anchor < 0 || !isVisible(anchor, base)) return null;
 
-    Point[] oldPoints = points.toArray(new Point[points.size()]),
-            newPoints = new Point[newSize];
+      from = transition(0, anchor, base);
+      to   = transition(anchor, size - 1, base) - 1;
+    }
 
-    int srcFrom = 0, srcTo = leftSupport, length = 0,
-        dstStart = 0, newIndex = leftSupport + 1;
+    // collect all vertices the sequential search would consider, which are
+    // the ends of the chain and collinear neighbours
+    int[] candidates = new int[8];
+    int count = 0;
+    for(int end : new int[]{from, (to + 1) % size}) {
+      if(!isSupportCandidate(end, base)) return null;
+
+      for(int dir = -1; dir <= 1; dir += 2) {
+        for(int k = (dir < 0 ? 0 : 1); k < size; ++k) {
+          int curr = (end + dir * k + size) % size;
+          if(!isSupportCandidate(curr, base)) break;
+          if(count == candidates.length) return null;
+          candidates[count++] = curr;
+        }
+      }
+    }
+    Arrays.sort(candidates, 0, count);
 
-    boolean updateFirst = base.compareTo(points.get(0)) < 0;
-    boolean insertFromRight = updateFirst && leftSupport > rightSupport;
-    boolean insertFromLeft = updateFirst && leftSupport == 0;
+    int[] supports = {-1, -1};
+    int insertIndex = 0;
 
-    if(insertFromRight) {
-      // in this case we have an new minX
-      srcFrom = rightSupport;
-      srcTo   = leftSupport;
-      dstStart = 1;
-      newIndex = 0;
+    for(int i = 0; i < count && insertIndex < 2; ++i) {
+      if(i > 0 && candidates[i] == candidates[i - 1]) continue;
+      if(updateCollinears(base, supports, insertIndex, candidates[i]))
+        supports[insertIndex++] = candidates[i];
     }
 
-    if(insertFromLeft) {
-      srcFrom  = 1;
-      dstStart = 1;
-      newIndex = 0;
+    return insertIndex == 2 ? supports : null;
+  }
+
+  private boolean isSupportCandidate(int index, Point base) {
+    State state = getState(index, base);
+    return state != State.CONCAVE && state != State.REFLEX;
+  }
+
+  /**
+   * @return true, if base lies right of edge index, index + 1.
+   */
+  private boolean isVisible(int index, Point base) {
+    return MathUtils.checkOrientation(vertices[index],
+        vertices[(index + 1) % size], base) < 0;
+  }
+
+  /**
+   * Binary search for the edge in (lo, hi], where the visibility changes.
+   *
+   * @return the first edge after lo with the visibility of hi.
+   */
+  private int transition(int lo, int hi, Point base) {
+    boolean visible = isVisible(hi, base);
+
+    while(hi - lo > 1) {
+      int mid = (lo + hi) >>> 1;
+      if(isVisible(mid, base) == visible) hi = mid;
+      else lo = mid;
     }
+    return hi;
+  }
 
-    length = srcTo - srcFrom + 1;
+  /**
+   * Binary search for the triangle 0, i, i + 1 whose angle at point 0
+   * contains p.
+   *
+   * @return i, or -1 if p lies on a diagonal or outside the angle at point 0
+   */
+  private int fanIndex(Point p) {
+    Point first = vertices[0];
+    int lo = 1, hi = size - 1;
 
-    System.arraycopy(oldPoints, srcFrom, newPoints, dstStart, length);
-    newPoints[newIndex] = base;
+    if(MathUtils.checkOrientation(first, vertices[lo], p) <= 0 ||
+       MathUtils.checkOrientation(first, vertices[hi], p) >= 0)
+      return -1;
 
-    if(insertFromLeft){
-      newPoints[newPoints.length - 1] = oldPoints[0];
-      newSize--;
+    while(hi - lo > 1) {
+      int mid = (lo + hi) >>> 1;
+      int orients = MathUtils.checkOrientation(first, vertices[mid], p);
+
+      if(orients == 0) return -1;
+      if(orients > 0) lo = mid;
+      else hi = mid;
     }
+    return lo;
+  }
 
-    // wir haben schon alle kopiert
-    if(length + 1 == newSize) {
-      points.clear();
-      Collections.addAll(points, newPoints); 
-      return newIndex;
+  private int[] getSupports(Point base){
+    if(size() >= binarySearchMinSize) {
+      int[] supports = supportsByBinarySearch(base);
+      if(supports != null) return supports;
     }
+    return supportsBySeqSearch(base);
+  }
 
-    dstStart = length + 1;
-    srcFrom  = rightSupport;
-    srcTo    = oldPoints.length - 1;
+  /**
+   * Same as containsPoint(point, true), in O(log n) for larger hulls.
+   */
+  private boolean containsPointOnLine(Point point) {
+    if(size < binarySearchMinSize) return containsPoint(point, true);
 
-    System.arraycopy(oldPoints, srcFrom, newPoints, dstStart, srcTo - srcFrom + 1);
+    if(isVisible(0, point) || isVisible(size - 1, point)) return false;
 
-    points.clear();
-    Collections.addAll(points, newPoints);
-    return newIndex;
+    int index = fanIndex(point);
+    if(index < 0) return containsPoint(point, true);
+
+    return !isVisible(index, point);
+  }
+
+  private int splice(int leftSupport, int rightSupport, Point base){
+    boolean updateFirst = base.compareTo(vertices[0]) < 0;
+
+    if(updateFirst && leftSupport > rightSupport) {
+      // in this case we have an new minX: base, right .. left
+      saveForUndo(0);
+      int length = leftSupport - rightSupport + 1;
+      System.arraycopy(vertices, rightSupport, vertices, 1, length);
+      vertices[0] = base;
+      resize(length + 1);
+      return 0;
+    }
+
+    if(updateFirst && leftSupport == 0) {
+      // base, right .. end, old first
+      saveForUndo(0);
+      Point first = vertices[0];
+      int length = size - rightSupport;
+      System.arraycopy(vertices, rightSupport, vertices, 1, length);
+      vertices[0] = base;
+      vertices[length + 1] = first;
+      resize(length + 2);
+      return 0;
+    }
+
+    // 0 .. left, base, right .. end
+    if(rightSupport == 0) rightSupport = size;
+    if(leftSupport > rightSupport)
+      throw new RuntimeException("SteadyGrowthConvexHull.splice: " + base +
+          " would remove the first point");
+
+    saveForUndo(leftSupport + 1);
+    int length = size - rightSupport;
+    System.arraycopy(vertices, rightSupport, vertices, leftSupport + 2, length);
+    vertices[leftSupport + 1] = base;
+    resize(leftSupport + 2 + length);
+    return leftSupport + 1;
   }
 
   private int addPoint0(Point point) {
-    if(size() == 0) {
-      points.add(point);
+    if(size == vertices.length)
+      vertices = Arrays.copyOf(vertices, 2 * vertices.length);
+
+    if(size == 0) {
+      saveForUndo(0);
+      vertices[size++] = point;
       return 0;
     }
 
-    if(size() == 1) {
-      int index = point.compareTo(points.get(0)) < 0 ? 0 : 1;
-      points.add(index, point);
+    if(size == 1) {
+      int index = point.compareTo(vertices[0]) < 0 ? 0 : 1;
+      saveForUndo(0);
+      vertices[1] = vertices[0];
+      vertices[index] = point;
+      size++;
 
       return index;
     }
 
     int[] supports = getSupports(point);
-    Point leftSupport  = points.get(supports[0]),
-          rightSupport = points.get(supports[1]);
+    Point leftSupport  = vertices[supports[0]],
+          rightSupport = vertices[supports[1]];
 
 
     // point has to lie on the right side of the line leftSupport nad rightSupport
@@ -228,8 +423,8 @@ public class SteadyGrowthConvexHull extends Polygon
     Point a, b;
 
     for (int size = size(), p = size - 1, q = 0; q < size; p = q++) {
-      a = points.get(p);
-      b = points.get(q);
+      a = vertices[p];
+      b = vertices[q];
 
       // NOTE: hier muessen wir nicht auf LineSegment.containsPoint
       // testen, da selbst wenn ein Punkt auf der Geraden a-b
@@ -259,7 +454,7 @@ public class SteadyGrowthConvexHull extends Polygon
 
   @Override
   public int size() {
-    return points.size();
+    return size;
   }
 
   @Override
@@ -0,0 +1,535 @@
+package polygonsSWP.geometry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Sweep line intersection search on the edges of a closed polygonal chain,
+ * where edge i is the line segment (i, i+1).
+ *
+ * In early exit mode this is the Shamos-Hoey algorithm, which stops as soon
+ * as two neighbouring edges in the sweep status intersect, O(n log n). In
+ * report-all mode the crossings are additionally scheduled as events and
+ * handled as in the Bentley-Ottmann algorithm, O((n + k) log n).
+ *
+ * Whether two edges intersect is decided by
+ * OrderedListPolygon.edgesIntersect(), so every reported pair is also
+ * reported by the naive quadratic search. The sweep only finds collinear
+ * edges if they overlap, though.
+ *
+ * The sweep runs from left to right. Event points are ordered
+ * lexicographically by (x, y), which makes vertical edges behave like edges
+ * with a very steep positive slope. Whether an edge passes through an event
+ * point is decided with a tolerance relative to the largest coordinate, as
+ * computed crossings are only exact up to rounding.
+ *
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+class SweepLine
+{
+  /**
+   * Event types. Ordinal gives the processing order for events on the same
+   * point.
+   */
+  private enum Type { DELETE, CROSSING, INSERT }
+
+  private static class Event
+    implements Comparable<Event>
+  {
+    final double x, y;
+    final Type type;
+    final int a, b;
+
+    Event(double x, double y, Type type, int a, int b) {
+      this.x = x;
+      this.y = y;
+      this.type = type;
+      this.a = a;
+      this.b = b;
+    }
+
+    @Override
+    public int compareTo(Event e) {
+      int c = compareLexicographic(x, y, e.x, e.y);
+      if (c != 0) return c;
+      c = type.compareTo(e.type);
+      if (c != 0) return c;
+      if (a != e.a) return a < e.a ? -1 : 1;
+      if (b != e.b) return b < e.b ? -1 : 1;
+      return 0;
+    }
+  }
+
+  /**
+   * Node of the sweep status, a treap ordered from bottom to top.
+   */
+  private static class Node
+  {
+    int edge;
+    final int priority;
+    Node left, right, parent;
+
+    Node(int edge, int priority) {
+      this.edge = edge;
+      this.priority = priority;
+    }
+  }
+
+  /** Tolerance of passesEventPoint() relative to the largest coordinate. */
+  private static final double RELATIVE_TOLERANCE = 1E-9;
+
+  private final List<Point> points;
+  private final int n;
+  private final boolean stopAtFirst;
+
+  /* Left and right endpoint of every edge. */
+  private final double[] lx, ly, rx, ry;
+
+  /* Status node of every edge, null if the edge is not in the status. */
+  private final Node[] nodes;
+  private Node root;
+  private int seed = 0x2545F491;
+
+  private final PriorityQueue<Event> events = new PriorityQueue<Event>();
+  private final Set<Long> found = new HashSet<Long>();
+
+  /* Current event point. */
+  private double sx, sy;
+
+  /* Maximum distance of an edge passing through the event point. */
+  private final double tolerance;
+
+  private SweepLine(List<Point> points, boolean stopAtFirst) {
+    this.points = points;
+    this.n = points.size();
+    this.stopAtFirst = stopAtFirst;
+
+    lx = new double[n];
+    ly = new double[n];
+    rx = new double[n];
+    ry = new double[n];
+    nodes = new Node[n];
+
+    double scale = 0;
+    for (int i = 0; i < n; i++) {
+      Point p = points.get(i), q = points.get((i + 1) % n);
+      if (compareLexicographic(p.x, p.y, q.x, q.y) > 0) {
+        Point tmp = p;
+        p = q;
+        q = tmp;
+      }
+      lx[i] = p.x;
+      ly[i] = p.y;
+      rx[i] = q.x;
+      ry[i] = q.y;
+      scale = Math.max(scale, Math.max(Math.abs(p.x), Math.abs(p.y)));
+    }
+    tolerance = RELATIVE_TOLERANCE * scale;
+  }
+
+  /**
+   * The sweep needs at least four vertices and no edges of length zero.
+   * Callers should fall back to the naive search otherwise.
+   */
+  static boolean isApplicable(List<Point> points) {
+    int n = points.size();
+    if (n < 4) return false;
+
+    for (int i = 0, j = n - 1; i < n; j = i++) {
+      Point p = points.get(j), q = points.get(i);
+      if (p.x == q.x && p.y == q.y) return false;
+    }
+    return true;
+  }
+
+  /**
+   * Shamos-Hoey simplicity test.
+   *
+   * @return true, if no two edges intersect.
+   */
+  static boolean isSimple(List<Point> points) {
+    return !new SweepLine(points, true).run();
+  }
+
+  /**
+   * Bentley-Ottmann intersection search.
+   *
+   * @return all intersections in the format of
+   *         OrderedListPolygon.findIntersections(), ordered by the first and
+   *         then by the second index.
+   */
+  static List<Integer[]> findIntersections(List<Point> points) {
+    SweepLine sl = new SweepLine(points, false);
+    sl.run();
+
+    long[] keys = new long[sl.found.size()];
+    int k = 0;
+    for (Long key : sl.found)
+      keys[k++] = key;
+    Arrays.sort(keys);
+
+    List<Integer[]> retval = new ArrayList<Integer[]>(keys.length);
+    for (long key : keys)
+      retval.add(new Integer[] { (int) (key / sl.n), (int) (key % sl.n) });
+    return retval;
+  }
+
+  /**
+   * @return true, if an intersection was found.
+   */
+  private boolean run() {
+    // Consecutive edges never become neighbours in the status if they form a
+    // monotone chain, so they are tested up front.
+    for (int i = 0; i < n; i++) {
+      if (report(i, (i + 1) % n) && stopAtFirst) return true;
+    }
+
+    for (int i = 0; i < n; i++) {
+      events.add(new Event(lx[i], ly[i], Type.INSERT, i, -1));
+      events.add(new Event(rx[i], ry[i], Type.DELETE, i, -1));
+    }
+
+    while (!events.isEmpty()) {
+      Event e = events.poll();
+      sx = e.x;
+      sy = e.y;
+
+      boolean isec = false;
+      switch (e.type) {
+      case INSERT:
+        isec = reorder(insert(e.a));
+        break;
+      case DELETE:
+        Node node = nodes[e.a];
+        isec = reportThroughEventPoint(node);
+        Node below = predecessor(node), above = successor(node);
+        remove(node);
+        if (below != null && passesEventPoint(below)) isec |= reorder(below);
+        else if (above != null && passesEventPoint(above))
+          isec |= reorder(above);
+        else isec |= test(below, above);
+        break;
+      case CROSSING:
+        // Stale events (edges not neighbouring anymore or already swapped)
+        // are ignored.
+        Node lower = nodes[e.a], upper = nodes[e.b];
+        if (lower != null && upper != null && successor(lower) == upper)
+          isec = reorder(lower);
+        break;
+      }
+
+      if (isec && stopAtFirst) return true;
+    }
+
+    return !found.isEmpty();
+  }
+
+  /**
+   * Tests two neighbouring status nodes for an intersection and, if they
+   * cross further right, schedules the crossing.
+   *
+   * @return true, if the edges intersect.
+   */
+  private boolean test(Node lower, Node upper) {
+    if (lower == null || upper == null) return false;
+
+    boolean isec = report(lower.edge, upper.edge);
+    if (isec && !stopAtFirst) scheduleCrossing(lower.edge, upper.edge);
+    return isec;
+  }
+
+  /**
+   * Reports the edge against all edges passing through the current event
+   * point. These form a contiguous run in the status, but only the direct
+   * neighbours would be tested otherwise.
+   */
+  private boolean reportThroughEventPoint(Node node) {
+    boolean isec = false;
+    for (Node other = predecessor(node); other != null &&
+        passesEventPoint(other); other = predecessor(other))
+      isec |= report(node.edge, other.edge);
+
+    for (Node other = successor(node); other != null &&
+        passesEventPoint(other); other = successor(other))
+      isec |= report(node.edge, other.edge);
+    return isec;
+  }
+
+  private boolean report(int a, int b) {
+    int i = Math.min(a, b), j = Math.max(a, b);
+    long key = (long) i * n + j;
+    if (found.contains(key)) return true;
+
+    if (!OrderedListPolygon.edgesIntersect(points, i, j)) return false;
+
+    found.add(key);
+    return true;
+  }
+
+  private void scheduleCrossing(int lower, int upper) {
+    double[] q = properCrossing(lower, upper);
+    if (q == null) return;
+
+    // Crossings left of the sweep have already been handled.
+    if (compareLexicographic(q[0], q[1], sx, sy) <= 0) return;
+
+    events.add(new Event(q[0], q[1], Type.CROSSING, lower, upper));
+  }
+
+  /**
+   * Reorders the run of edges passing through the event point around the
+   * given node as they are right of the event point. This handles crossings
+   * as well as edges which were neighbours of an inserted or deleted edge in
+   * the event point.
+   */
+  private boolean reorder(Node node) {
+    Node bottom = node, top = node;
+    Node next;
+    while ((next = predecessor(bottom)) != null && passesEventPoint(next))
+      bottom = next;
+    while ((next = successor(top)) != null && passesEventPoint(next))
+      top = next;
+
+    if (bottom == top) {
+      // Common case, nothing to reorder.
+      boolean isec = test(predecessor(bottom), bottom);
+      return test(top, successor(top)) || isec;
+    }
+
+    List<Node> run = new ArrayList<Node>();
+    for (Node curr = bottom; curr != top; curr = successor(curr))
+      run.add(curr);
+    run.add(top);
+
+    // All edges pass through the event point, so right of it they are
+    // ordered by slope.
+    Integer[] edges = new Integer[run.size()];
+    for (int i = 0; i < edges.length; i++)
+      edges[i] = run.get(i).edge;
+    Arrays.sort(edges, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        return compareSlopes(a, b);
+      }
+    });
+    for (int i = 0; i < edges.length; i++) {
+      run.get(i).edge = edges[i];
+      nodes[edges[i]] = run.get(i);
+    }
+
+    boolean isec = false;
+    for (int i = 0; i < edges.length - 1; i++) {
+      for (int j = i + 1; j < edges.length; j++) {
+        isec |= report(edges[i], edges[j]);
+        if (isec && stopAtFirst) return true;
+      }
+    }
+
+    isec |= test(predecessor(bottom), bottom);
+    isec |= test(top, successor(top));
+    return isec;
+  }
+
+  private boolean passesEventPoint(Node node) {
+    return Math.abs(yAt(node.edge) - sy) <= tolerance;
+  }
+
+  /**
+   * @return the crossing point of both edges, if they cross in the interior
+   *         of both, null otherwise.
+   */
+  private double[] properCrossing(int a, int b) {
+    double a1 = orientation(a, lx[b], ly[b]), a2 = orientation(a, rx[b], ry[b]);
+    double b1 = orientation(b, lx[a], ly[a]), b2 = orientation(b, rx[a], ry[a]);
+    if (!(a1 < 0 && a2 > 0 || a1 > 0 && a2 < 0)) return null;
+    if (!(b1 < 0 && b2 > 0 || b1 > 0 && b2 < 0)) return null;
+
+    // Always compute the point along the same edge, so that it is identical
+    // each time the pair is tested. Vertical edges keep their exact x.
+    int s = Math.min(a, b), t = Math.max(a, b);
+    if (rx[t] == lx[t]) {
+      s = t;
+      t = Math.min(a, b);
+    }
+
+    double dsx = rx[s] - lx[s], dsy = ry[s] - ly[s];
+    double dtx = rx[t] - lx[t], dty = ry[t] - ly[t];
+    double mu =
+        ((lx[t] - lx[s]) * dty - (ly[t] - ly[s]) * dtx) /
+            (dsx * dty - dsy * dtx);
+
+    return new double[] { lx[s] + mu * dsx, ly[s] + mu * dsy };
+  }
+
+  private double orientation(int edge, double x, double y) {
+    return (rx[edge] - lx[edge]) * (y - ly[edge]) - (ry[edge] - ly[edge]) *
+        (x - lx[edge]);
+  }
+
+  /**
+   * @return y-coordinate of the edge at the current event point. Vertical
+   *         edges are clamped to the event point.
+   */
+  private double yAt(int edge) {
+    if (lx[edge] == rx[edge])
+      return Math.min(Math.max(sy, ly[edge]), ry[edge]);
+    if (sx == lx[edge]) return ly[edge];
+    if (sx == rx[edge]) return ry[edge];
+    return ly[edge] + (ry[edge] - ly[edge]) *
+        ((sx - lx[edge]) / (rx[edge] - lx[edge]));
+  }
+
+  /**
+   * Order of two edges in the status right of the current event point.
+   */
+  private int compare(int a, int b) {
+    if (a == b) return 0;
+
+    double ya = yAt(a), yb = yAt(b);
+    if (ya != yb) return ya < yb ? -1 : 1;
+
+    // Both pass the event point.
+    return compareSlopes(a, b);
+  }
+
+  /**
+   * Order of two edges right of a common point.
+   */
+  private int compareSlopes(int a, int b) {
+    if (a == b) return 0;
+
+    double dxa = rx[a] - lx[a], dya = ry[a] - ly[a];
+    double dxb = rx[b] - lx[b], dyb = ry[b] - ly[b];
+    if (dxa == 0 && dxb != 0) return 1;
+    if (dxa != 0 && dxb == 0) return -1;
+    if (dxa != 0 && dxb != 0) {
+      int c = Double.compare(dya * dxb, dyb * dxa);
+      if (c != 0) return c;
+    }
+
+    return a < b ? -1 : 1;
+  }
+
+  private static int compareLexicographic(double x1, double y1, double x2,
+      double y2) {
+    if (x1 != x2) return x1 < x2 ? -1 : 1;
+    if (y1 != y2) return y1 < y2 ? -1 : 1;
+    return 0;
+  }
+
+  /*
+   * Treap operations. Nodes are addressed via handles, so only insertions need
+   * to compare edges.
+   */
+
+  private Node insert(int edge) {
+    seed ^= seed << 13;
+    seed ^= seed >>> 17;
+    seed ^= seed << 5;
+
+    Node node = new Node(edge, seed);
+    nodes[edge] = node;
+
+    if (root == null) {
+      root = node;
+      return node;
+    }
+
+    Node curr = root;
+    while (true) {
+      if (compare(edge, curr.edge) < 0) {
+        if (curr.left == null) {
+          curr.left = node;
+          break;
+        }
+        curr = curr.left;
+      }
+      else {
+        if (curr.right == null) {
+          curr.right = node;
+          break;
+        }
+        curr = curr.right;
+      }
+    }
+    node.parent = curr;
+
+    while (node.parent != null && node.priority > node.parent.priority)
+      rotateUp(node);
+
+    return node;
+  }
+
+  private void remove(Node node) {
+    while (node.left != null || node.right != null) {
+      Node child;
+      if (node.left == null) child = node.right;
+      else if (node.right == null) child = node.left;
+      else child =
+          node.left.priority > node.right.priority ? node.left : node.right;
+      rotateUp(child);
+    }
+
+    if (node.parent == null) root = null;
+    else if (node.parent.left == node) node.parent.left = null;
+    else node.parent.right = null;
+
+    nodes[node.edge] = null;
+  }
+
+  private void rotateUp(Node node) {
+    Node parent = node.parent, grand = parent.parent;
+
+    if (parent.left == node) {
+      parent.left = node.right;
+      if (node.right != null) node.right.parent = parent;
+      node.right = parent;
+    }
+    else {
+      parent.right = node.left;
+      if (node.left != null) node.left.parent = parent;
+      node.left = parent;
+    }
+    parent.parent = node;
+    node.parent = grand;
+
+    if (grand == null) root = node;
+    else if (grand.left == parent) grand.left = node;
+    else grand.right = node;
+  }
+
+  private Node predecessor(Node node) {
+    if (node.left != null) {
+      node = node.left;
+      while (node.right != null)
+        node = node.right;
+      return node;
+    }
+    while (node.parent != null && node.parent.left == node)
+      node = node.parent;
+    return node.parent;
+  }
+
+  private Node successor(Node node) {
+    if (node.right != null) {
+      node = node.right;
+      while (node.left != null)
+        node = node.left;
+      return node;
+    }
+    while (node.parent != null && node.parent.right == node)
+      node = node.parent;
+    return node.parent;
+  }
+}
@@ -6,6 +6,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -101,12 +102,19 @@ class ShortestPathPanel
         history.newScene().addPolygon(currentPolygon, true).save();
 
         emitSPGenerationStarted(history);
+        // Generators may return a PackedPolygon, whose points are created
+        // on every access. The shortest path needs fixed Point objects.
+        final OrderedListPolygon polygon =
+            (currentPolygon instanceof OrderedListPolygon)
+                ? (OrderedListPolygon) currentPolygon
+                : new OrderedListPolygon(
+                    new ArrayList<Point>(currentPolygon.getPoints()));
         Thread t = new Thread(new Runnable() {
 
           @Override
           public void run() {
             ShortestPathGenerator.generateShortestPath(
-                (OrderedListPolygon) currentPolygon, startPoint,
+                polygon, startPoint,
                 endPoint, history);
             emitSPGenerationFinished();
           }
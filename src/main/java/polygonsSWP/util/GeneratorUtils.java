@@ -118,10 +118,12 @@ public class GeneratorUtils
     Random r = Random.create();
 
     List<Point> points;
+    double[] coords = new double[2 * n];
     do {
+      r.nextDoubles(coords);
       points = new ArrayList<Point>(n);
       for (int i = 0; i < n; i++) {
-        Point p = new Point(r.nextDouble() * size, r.nextDouble() * size);
+        Point p = new Point(coords[2 * i] * size, coords[2 * i + 1] * size);
         points.add(p);
       }
     }
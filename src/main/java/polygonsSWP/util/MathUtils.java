@@ -37,9 +37,17 @@ public class MathUtils
    *         => p is on the segment
    */
   public static int checkOrientation(Point begin, Point end, Point p) {
+    return checkOrientation(begin.x, begin.y, end.x, end.y, p.x, p.y);
+  }
+
+  /**
+   * Same as checkOrientation(Point, Point, Point) for plain coordinates.
+   */
+  public static int checkOrientation(double beginX, double beginY,
+      double endX, double endY, double px, double py) {
     double result =
-        begin.x * (end.y - p.y) + end.x * (p.y - begin.y) + p.x *
-            (begin.y - end.y);
+        beginX * (endY - py) + endX * (py - beginY) + px *
+            (beginY - endY);
     if (result > 0 + EPSILON) return 1;
     else if (result < 0 - EPSILON) return -1;
     else return 0;
@@ -17,15 +17,50 @@ public class Random extends java.util.Random
   static Random rand = null;
   static long seed;
 
+  /* Generator of the polygon the current thread is working on. */
+  private static final ThreadLocal<Random> current = new ThreadLocal<Random>();
+
+  /* Source of seeds if pseudoRandom is off. */
+  private static final java.util.Random seeds = new java.util.Random();
+
   public Random() { super(); }
   public Random(long seed) { super(seed); }
 
+  /**
+   * Fills the array with values of nextDouble().
+   */
+  public void nextDoubles(double[] values){
+    nextDoubles(values, 0, values.length);
+  }
+
+  /**
+   * Fills values[from..to-1] with values of nextDouble(), in order.
+   */
+  public void nextDoubles(double[] values, int from, int to){
+    for(int i = from; i < to; i++)
+      values[i] = nextDouble();
+  }
+
+  /**
+   * Switches the shared pseudo random generator on or off. Calling this again
+   * with the same seed restarts the sequence.
+   */
   public static void pseudoRandom(boolean on, long seed){
-    pseudoRandom = on;
-    Random.seed = seed;
+    synchronized (Random.class) {
+      pseudoRandom = on;
+      Random.seed = seed;
+      rand = null;
+    }
   }
 
+  /**
+   * Returns the generator bound to the current thread, if any (see bind()).
+   * Otherwise a new generator, or the shared one if pseudoRandom is on.
+   */
   public static Random create(){
+    Random bound = current.get();
+    if(bound != null) return bound;
+
     if(!pseudoRandom) return new Random();
 
     synchronized (Random.class) {
@@ -35,6 +70,9 @@ public class Random extends java.util.Random
   }
 
   public static Random create(long seed){
+    Random bound = current.get();
+    if(bound != null) return bound;
+
     if(!pseudoRandom) return new Random(seed);
 
     synchronized (Random.class) {
@@ -42,4 +80,47 @@ public class Random extends java.util.Random
       return rand;
     }
   }
+
+  /**
+   * Returns the seed of the index-th polygon of a run. If pseudoRandom is on,
+   * the seed is derived from the master seed and the index only, so each
+   * polygon can be reproduced independent of the number of threads and the
+   * order of generation. Otherwise it is a random seed.
+   */
+  public static long seedFor(long index){
+    synchronized (Random.class) {
+      if(!pseudoRandom) return seeds.nextLong();
+      return seedFor(seed, index);
+    }
+  }
+
+  /**
+   * Returns the index-th seed derived from the given one, independent of
+   * pseudoRandom.
+   */
+  public static long seedFor(long seed, long index){
+    return mix(seed + (index + 1) * 0x9E3779B97F4A7C15L);
+  }
+
+  /**
+   * Finalizer of SplitMix64, spreads consecutive values over all bits.
+   */
+  private static long mix(long z){
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * Binds a generator to the current thread, so create() returns it until
+   * the previous binding is restored. Pass null to unbind.
+   *
+   * @return the previously bound generator, or null
+   */
+  public static Random bind(Random random){
+    Random previous = current.get();
+    if(random == null) current.remove();
+    else current.set(random);
+    return previous;
+  }
 }
@@ -1,12 +1,11 @@
 package polygonsSWP.util;
 
-import java.util.Random;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
-
 /**
  * @see http://www.javamex.com/tutorials/random_numbers/numerical_recipes.shtml
- * 
+ *
+ * The generator is not thread-safe, an instance must only be used by one
+ * thread at a time (e.g. one per polygon, see AlgorithmRunner).
+ *
  * (c) 2011-2012
  * @author Steve Dierker <dierker.steve@fu-berlin.de>
  * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
@@ -17,28 +16,56 @@ import java.util.concurrent.locks.ReentrantLock;
  */
 public class RandomNumbers extends Random {
   private static final long serialVersionUID = -5974880786084237489L;
-  private Lock l = new ReentrantLock();
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
   private long u;
   private long v = 4101842887655102017L;
   private long w = 1;
-  
+
   public RandomNumbers() {
-    this(System.nanoTime());
+    this(System.nanoTime() ^ Thread.currentThread().getId());
   }
   public RandomNumbers(long seed) {
-    l.lock();
     u = seed ^ v;
     nextLong();
     v = u;
     nextLong();
     w = v;
     nextLong();
-    l.unlock();
   }
-  
+
   public long nextLong() {
-    l.lock();
-    try {
+    u = u * 2862933555777941757L + 7046029254386353087L;
+    v ^= v >>> 17;
+    v ^= v << 31;
+    v ^= v >>> 8;
+    w = 4294957665L * (w & 0xffffffff) + (w >>> 32);
+    long x = u ^ (u << 21);
+    x ^= x >>> 35;
+    x ^= x << 4;
+    long ret = (x + v) ^ w;
+    return ret;
+  }
+
+  protected int next(int bits) {
+    return (int) (nextLong() >>> (64-bits));
+  }
+
+  /**
+   * Uses the upper 53 bits of one nextLong().
+   */
+  @Override
+  public double nextDouble() {
+    return (nextLong() >>> 11) * DOUBLE_UNIT;
+  }
+
+  /**
+   * Same as calling nextDouble() for each element, in order.
+   */
+  @Override
+  public void nextDoubles(double[] values, int from, int to) {
+    long u = this.u, v = this.v, w = this.w;
+    for (int i = from; i < to; i++) {
       u = u * 2862933555777941757L + 7046029254386353087L;
       v ^= v >>> 17;
       v ^= v << 31;
@@ -47,15 +74,10 @@ public class RandomNumbers extends Random {
       long x = u ^ (u << 21);
       x ^= x >>> 35;
       x ^= x << 4;
-      long ret = (x + v) ^ w;
-      return ret;
-    } finally {
-      l.unlock();
+      values[i] = (((x + v) ^ w) >>> 11) * DOUBLE_UNIT;
     }
+    this.u = u;
+    this.v = v;
+    this.w = w;
   }
-  
-  protected int next(int bits) {
-    return (int) (nextLong() >>> (64-bits));
-  }
-
 }
@@ -0,0 +1,121 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.After;
+import org.junit.Test;
+
+import polygonsSWP.analysis.AlgorithmRunner;
+import polygonsSWP.analysis.PolygonLog;
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.heuristics.SpacePartitioningFactory;
+import polygonsSWP.generators.heuristics.TwoOptMovesFactory;
+import polygonsSWP.generators.other.PermuteAndRejectFactory;
+import polygonsSWP.generators.rpa.RandomPolygonAlgorithmFactory;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.Polygon;
+import polygonsSWP.util.Random;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class AlgorithmRunnerTest
+{
+  @After
+  public void tearDown() {
+    Random.pseudoRandom(false, 0);
+  }
+
+  @Test
+  public void testSeededRunsIndependentOfThreads() {
+    PolygonGeneratorFactory[] factories =
+        { new SpacePartitioningFactory(), new TwoOptMovesFactory() };
+
+    for (PolygonGeneratorFactory factory : factories) {
+      Map<Long, String> single = generate(factory, 1);
+      Map<Long, String> parallel = generate(factory, 4);
+
+      assertEquals(30, single.size());
+      assertEquals(single, parallel);
+    }
+  }
+
+  @Test
+  public void testRacing() {
+    Random.pseudoRandom(true, 1322691L);
+
+    Map<Parameters, Object> params = new HashMap<Parameters, Object>();
+    params.put(Parameters.n, 8);
+    params.put(Parameters.size, 100);
+
+    final List<PolygonStatistics> statistics =
+        new ArrayList<PolygonStatistics>();
+    PolygonLog log = new PolygonLog() {
+      @Override
+      public synchronized void writeOut(Polygon polygon,
+          PolygonStatistics stats) {
+        assertTrue(((OrderedListPolygon) polygon).isSimple());
+        statistics.add(stats);
+      }
+
+      @Override
+      public void close() {}
+    };
+
+    assertTrue(AlgorithmRunner.run(10, 1, 2, 1, 1, 3, log,
+        new PermuteAndRejectFactory(), params));
+    assertEquals(10, statistics.size());
+    for (PolygonStatistics stats : statistics) {
+      assertEquals(3, stats.racers.intValue());
+      assertNotNull(stats.iterations);
+      assertTrue(stats.time_for_creating_polygon >= 0);
+    }
+
+    // needs a point set
+    assertFalse(AlgorithmRunner.run(1, 1, 1, 1, 1, 2, log,
+        new RandomPolygonAlgorithmFactory(), params));
+  }
+
+  /**
+   * @return polygons by seed
+   */
+  private static Map<Long, String> generate(PolygonGeneratorFactory factory,
+      int threads) {
+    Random.pseudoRandom(true, 1322691L);
+
+    Map<Parameters, Object> params = new HashMap<Parameters, Object>();
+    params.put(Parameters.n, 20);
+    params.put(Parameters.size, 100);
+
+    final Map<Long, String> polygons = new TreeMap<Long, String>();
+    PolygonLog log = new PolygonLog() {
+      @Override
+      public synchronized void writeOut(Polygon polygon,
+          PolygonStatistics statistics) {
+        assertNotNull(statistics.seed);
+        polygons.put(statistics.seed, polygon.toString());
+      }
+
+      @Override
+      public void close() {}
+    };
+
+    assertTrue(AlgorithmRunner.run(30, threads, threads, 1, 1, log, factory,
+        params));
+    return polygons;
+  }
+}
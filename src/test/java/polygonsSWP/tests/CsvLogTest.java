@@ -0,0 +1,223 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import polygonsSWP.analysis.CsvLog;
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.PackedPolygon;
+import polygonsSWP.geometry.Point;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class CsvLogTest
+{
+  private static final double[] VALUES = { 0, -0.0, 1, -1, 42, 999.5,
+      9999999, 10000000, -12345678, 0.001, 0.0001, 1E-20, 1.5E300,
+      123.456, 1.0 / 3, Double.NaN, Double.POSITIVE_INFINITY };
+
+  @Test
+  public void testLayout()
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CsvLog log = new CsvLog(bytes, true, true);
+
+    StringBuilder expected = new StringBuilder();
+    expected.append("polygon;used_algorithm;number_of_points;surface_area;" +
+        "circumference;timestamp;time_for_creating_polygon;iterations;" +
+        "rejections;count_of_backtracks;radius;" +
+        "avg_velocity_without_collisions;initializeRejections;maximumRejections\n");
+
+    for (int i = 0; i < VALUES.length; i++) {
+      List<Point> points = new ArrayList<Point>();
+      for (int j = 0; j <= i; j++)
+        points.add(new Point(VALUES[j], VALUES[i - j]));
+      OrderedListPolygon polygon = new OrderedListPolygon(points);
+
+      PolygonStatistics stats = new PolygonStatistics();
+      stats.used_algorithm = "Permute & Reject";
+      stats.number_of_points = points.size();
+      stats.surface_area = VALUES[i];
+      stats.circumference = VALUES[VALUES.length - 1 - i];
+      stats.timestamp = -1234567890123L * i;
+      stats.time_for_creating_polygon = Long.MAX_VALUE - i;
+      stats.iterations = (i % 2 == 0) ? i : null;
+      stats.radius = (i % 3 == 0) ? VALUES[i] : null;
+
+      log.writeOut(polygon, stats);
+      expected.append(legacyLine(polygon, stats));
+    }
+    log.close();
+
+    assertEquals(expected.toString(), bytes.toString("US-ASCII"));
+  }
+
+  @Test
+  public void testRandomDoubles()
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CsvLog log = new CsvLog(bytes, false, true);
+    StringBuilder expected = new StringBuilder();
+
+    Random random = new Random(42);
+    for (int i = 0; i < 20000; i++) {
+      // Coordinates as the generators produce them, areas spanning many
+      // magnitudes and arbitrary bit patterns.
+      List<Point> points = new ArrayList<Point>();
+      points.add(new Point(random.nextDouble() * 600, random.nextDouble() * 600));
+      points.add(new Point(random.nextDouble(), -random.nextDouble() / 3));
+      points.add(new Point(Double.longBitsToDouble(random.nextLong()),
+          Double.longBitsToDouble(random.nextLong() >>> 12)));
+      OrderedListPolygon polygon = new OrderedListPolygon(points);
+
+      PolygonStatistics stats = new PolygonStatistics();
+      stats.used_algorithm = "Space Partitioning";
+      stats.number_of_points = points.size();
+      stats.surface_area =
+          (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(60) - 30);
+      stats.circumference = random.nextGaussian() * 1E7;
+      stats.radius = Math.scalb(random.nextDouble(), random.nextInt(2000) - 1000);
+
+      log.writeOut(polygon, stats);
+      expected.append(legacyLine(polygon, stats));
+    }
+    log.close();
+
+    assertEquals(expected.toString(), bytes.toString("US-ASCII"));
+  }
+
+  @Test
+  public void testPackedPolygon()
+    throws IOException {
+    ByteArrayOutputStream packedBytes = new ByteArrayOutputStream();
+    ByteArrayOutputStream listBytes = new ByteArrayOutputStream();
+    CsvLog packedLog = new CsvLog(packedBytes, true, true);
+    CsvLog listLog = new CsvLog(listBytes, true, true);
+
+    for (int i = 0; i < VALUES.length; i++) {
+      PackedPolygon packed = new PackedPolygon();
+      for (int j = 0; j <= i; j++)
+        packed.addPoint(VALUES[j], VALUES[i - j]);
+
+      PolygonStatistics stats = new PolygonStatistics();
+      stats.used_algorithm = "TwoPeasants";
+      stats.number_of_points = packed.size();
+      packedLog.writeOut(packed, stats);
+      listLog.writeOut(new OrderedListPolygon(
+          new ArrayList<Point>(packed.getPoints())), stats);
+    }
+    packedLog.close();
+    listLog.close();
+
+    assertEquals(listBytes.toString("US-ASCII"),
+        packedBytes.toString("US-ASCII"));
+  }
+
+  @Test
+  public void testRacingColumns()
+    throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CsvLog log = new CsvLog(bytes, true, true, true);
+
+    List<Point> points = new ArrayList<Point>();
+    points.add(new Point(0, 0));
+    points.add(new Point(1, 0));
+    points.add(new Point(0, 1.5));
+    OrderedListPolygon polygon = new OrderedListPolygon(points);
+
+    PolygonStatistics stats = new PolygonStatistics();
+    stats.used_algorithm = "2-opt Moves";
+    stats.number_of_points = points.size();
+    stats.cpu_time_for_creating_polygon = 123456789L;
+    stats.racers = 4;
+    log.writeOut(polygon, stats);
+    log.close();
+
+    String[] lines = bytes.toString("US-ASCII").split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].endsWith(
+        ";maximumRejections;cpu_time_for_creating_polygon;racers"));
+    assertEquals(legacyLine(polygon, stats).trim() + ";123456789;4", lines[1]);
+  }
+
+  @Test
+  public void testSeedColumn()
+    throws IOException {
+    List<Point> points = new ArrayList<Point>();
+    points.add(new Point(0, 0));
+    points.add(new Point(1, 0));
+    points.add(new Point(0, 1.5));
+    OrderedListPolygon polygon = new OrderedListPolygon(points);
+
+    PolygonStatistics stats = new PolygonStatistics();
+    stats.used_algorithm = "2-opt Moves";
+    stats.number_of_points = points.size();
+    stats.cpu_time_for_creating_polygon = 123456789L;
+    stats.racers = 4;
+    stats.seed = -6917529027641081856L;
+
+    // The seed follows the racing columns.
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    CsvLog log = new CsvLog(bytes, true, true, true, true);
+    log.writeOut(polygon, stats);
+    log.close();
+
+    String[] lines = bytes.toString("US-ASCII").split("\n");
+    assertEquals(2, lines.length);
+    assertTrue(lines[0].endsWith(
+        ";maximumRejections;cpu_time_for_creating_polygon;racers;seed"));
+    assertEquals(legacyLine(polygon, stats).trim() +
+        ";123456789;4;-6917529027641081856", lines[1]);
+
+    // Without racing it directly follows maximumRejections.
+    bytes = new ByteArrayOutputStream();
+    log = new CsvLog(bytes, true, true, false, true);
+    log.writeOut(polygon, stats);
+    log.close();
+
+    lines = bytes.toString("US-ASCII").split("\n");
+    assertTrue(lines[0].endsWith(";maximumRejections;seed"));
+    assertEquals(legacyLine(polygon, stats).trim() + ";-6917529027641081856",
+        lines[1]);
+  }
+
+  /**
+   * Line as written by the original implementation.
+   */
+  private static String legacyLine(OrderedListPolygon polygon,
+      PolygonStatistics statistics) {
+    StringBuilder sb = new StringBuilder();
+    String s = polygon.toString().replaceAll("\n", ":");
+    sb.append(s.substring(0, s.length() - 1));
+    sb.append(';').append(statistics.used_algorithm);
+    sb.append(';').append(statistics.number_of_points);
+    sb.append(';').append(statistics.surface_area);
+    sb.append(';').append(statistics.circumference);
+    sb.append(';').append(statistics.timestamp);
+    sb.append(';').append(statistics.time_for_creating_polygon);
+    sb.append(';').append(statistics.iterations);
+    sb.append(';').append(statistics.rejections);
+    sb.append(';').append(statistics.count_of_backtracks);
+    sb.append(';').append(statistics.radius);
+    sb.append(';').append(statistics.avg_velocity_without_collisions);
+    sb.append(';').append(statistics.initializeRejections);
+    sb.append(';').append(statistics.maximumRejections);
+    sb.append('\n');
+    return sb.toString();
+  }
+}
@@ -0,0 +1,233 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGenerator;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.other.EnumeratingPermuteAndRejectFactory;
+import polygonsSWP.generators.other.EnumerationCheckpoint;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.OrderedListPolygon.IntersectionAlgorithm;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.util.GeneratorUtils;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class EnumeratingPermuteAndRejectTest
+{
+
+  @Test
+  public void shouldBeSimplePolygon() throws IllegalParameterizationException {
+    for(int i = 0; i < 20; ++i){
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(3 + i % 12, 1000, true);
+
+      PolygonStatistics stats = new PolygonStatistics();
+      OrderedListPolygon polygon = generate(points, 1 + i % 4, stats);
+
+      assertEquals(new HashSet<Point>(points),
+          new HashSet<Point>(polygon.getPoints()));
+      assertEquals(points.size(), polygon.size());
+
+      assertTrue(i + ". try is not simple",
+          polygon.isSimple(IntersectionAlgorithm.NAIVE));
+      assertTrue(polygon.isClockwise() != 1);
+      assertTrue(stats.iterations >= points.size() - 1);
+      assertTrue(stats.count_of_backtracks >= 0);
+    }
+  }
+
+  @Test
+  public void shouldFindConvexPolygon() throws IllegalParameterizationException {
+    // Points in convex position have exactly one simple polygon, here given
+    // in clockwise order.
+    List<Point> points = new ArrayList<Point>();
+    for(int i = 0; i < 10; ++i){
+      double angle = -2 * Math.PI * i / 10;
+      points.add(new Point(500 + 400 * Math.cos(angle),
+          500 + 400 * Math.sin(angle)));
+    }
+
+    for(int threads = 1; threads <= 4; threads *= 2){
+      OrderedListPolygon polygon =
+          generate(points, threads, new PolygonStatistics());
+      assertTrue(polygon.isSimple(IntersectionAlgorithm.NAIVE));
+
+      // counterclockwise, starting with the first point
+      List<Point> result = polygon.getPoints();
+      int start = result.indexOf(points.get(0));
+      for(int i = 0; i < 10; ++i)
+        assertEquals(points.get((10 - i) % 10), result.get((start + i) % 10));
+    }
+  }
+
+  @Test
+  public void testCheckpointFile() throws IOException {
+    File file = File.createTempFile("enumeration", ".checkpoint");
+    try {
+      List<Point> points = GeneratorUtils.createRandomSetOfPointsInSquare(10, 1000, true);
+      new EnumerationCheckpoint(points, new int[] { 0, 3, 7 }, 5, 1234567890123L, 42).write(file);
+
+      EnumerationCheckpoint cp = EnumerationCheckpoint.read(file);
+      assertEquals(points, cp.points);
+      for(int i = 0; i < points.size(); ++i){
+        assertEquals(points.get(i).x, cp.points.get(i).x, 0);
+        assertEquals(points.get(i).y, cp.points.get(i).y, 0);
+      }
+      assertArrayEquals(new int[] { 0, 3, 7 }, cp.chain);
+      assertEquals(5, cp.next);
+      assertEquals(1234567890123L, cp.iterations);
+      assertEquals(42, cp.backtracks);
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testCorruptCheckpoint() throws IOException {
+    File file = File.createTempFile("enumeration", ".checkpoint");
+    try {
+      List<Point> points = GeneratorUtils.createRandomSetOfPointsInSquare(6, 1000, true);
+      int[][] chains = { { 0, 3, 3 }, { 0, 9 }, { 0, 1 }, { 0, 1 } };
+      int[] nexts = { 1, 1, -1, 7 };
+      for (int i = 0; i < chains.length; i++) {
+        new EnumerationCheckpoint(points, chains[i], nexts[i], 10, 2).write(file);
+        try {
+          EnumerationCheckpoint.read(file);
+          fail("checkpoint " + i + " should be rejected");
+        }
+        catch (IOException e) {
+          assertTrue(e.getMessage().contains("corrupt checkpoint"));
+        }
+      }
+
+      // Resuming reports the corrupt file instead of failing in the search.
+      HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+      params.put(Parameters.checkpoint, file.getPath());
+      params.put(Parameters.resume, true);
+      try {
+        new EnumeratingPermuteAndRejectFactory().createInstance(params,
+            new PolygonStatistics(), null);
+        fail("resuming should be rejected");
+      }
+      catch (IllegalParameterizationException e) {
+        assertTrue(e.getMessage().contains("corrupt checkpoint"));
+      }
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  @Test
+  public void testResume() throws IllegalParameterizationException, IOException,
+    InterruptedException {
+    File file = File.createTempFile("enumeration", ".checkpoint");
+    try {
+      for(int i = 0; i < 5; ++i){
+        List<Point> points =
+            GeneratorUtils.createRandomSetOfPointsInSquare(13, 1000, true);
+        PolygonStatistics expectedStats = new PolygonStatistics();
+        OrderedListPolygon expected = generate(points, 1, expectedStats);
+
+        HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+        params.put(Parameters.points, points);
+        params.put(Parameters.checkpoint, file.getPath());
+
+        // Stopped right away (i == 0) or after a while.
+        final PolygonGenerator gen = new EnumeratingPermuteAndRejectFactory()
+            .createInstance(params, new PolygonStatistics(), null);
+        if(i == 0) gen.stop();
+        else {
+          Thread stopper = new Thread() {
+            @Override
+            public void run() {
+              try {
+                Thread.sleep(5);
+              }
+              catch (InterruptedException e) {}
+              gen.stop();
+            }
+          };
+          stopper.start();
+        }
+
+        OrderedListPolygon polygon = (OrderedListPolygon) gen.generate();
+        if(polygon != null){
+          assertEquals(expected.getPoints(), polygon.getPoints());
+          assertFalse(file.exists());
+          continue;
+        }
+
+        // Resuming yields the polygon of an uninterrupted search.
+        params.clear();
+        params.put(Parameters.checkpoint, file.getPath());
+        params.put(Parameters.resume, true);
+        PolygonStatistics stats = new PolygonStatistics();
+        polygon = (OrderedListPolygon) new EnumeratingPermuteAndRejectFactory()
+            .createInstance(params, stats, null).generate();
+
+        assertEquals(expected.getPoints(), polygon.getPoints());
+        assertEquals(expectedStats.iterations, stats.iterations);
+        assertEquals(expectedStats.count_of_backtracks, stats.count_of_backtracks);
+        assertFalse(file.exists());
+      }
+
+      // A parallel search resumes from the same file.
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(12, 1000, true);
+      HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+      params.put(Parameters.points, points);
+      params.put(Parameters.checkpoint, file.getPath());
+      params.put(Parameters.threads, 4);
+      PolygonGenerator gen = new EnumeratingPermuteAndRejectFactory()
+          .createInstance(params, new PolygonStatistics(), null);
+      gen.stop();
+      assertNull(gen.generate());
+      assertTrue(file.exists());
+
+      params.put(Parameters.resume, true);
+      OrderedListPolygon polygon = (OrderedListPolygon)
+          new EnumeratingPermuteAndRejectFactory().createInstance(params,
+              new PolygonStatistics(), null).generate();
+      assertEquals(new HashSet<Point>(points),
+          new HashSet<Point>(polygon.getPoints()));
+      assertTrue(polygon.isSimple(IntersectionAlgorithm.NAIVE));
+    }
+    finally {
+      file.delete();
+    }
+  }
+
+  private static OrderedListPolygon generate(List<Point> points, int threads,
+      PolygonStatistics stats) throws IllegalParameterizationException {
+    HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+    params.put(Parameters.points, points);
+    params.put(Parameters.threads, threads);
+
+    PolygonGenerator gen =
+        new EnumeratingPermuteAndRejectFactory().createInstance(params, stats,
+            null);
+    return (OrderedListPolygon) gen.generate();
+  }
+}
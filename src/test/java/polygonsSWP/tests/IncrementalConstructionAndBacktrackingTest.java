@@ -0,0 +1,144 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGenerator;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.heuristics.IncrementalConstructionAndBacktrackingFactory;
+import polygonsSWP.generators.heuristics.IncrementalConstructionAndBacktrackingFactory.CrossingTable;
+import polygonsSWP.generators.heuristics.IncrementalConstructionAndBacktrackingFactory.EdgeSet;
+import polygonsSWP.geometry.LineSegment;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.OrderedListPolygon.IntersectionAlgorithm;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.util.GeneratorUtils;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class IncrementalConstructionAndBacktrackingTest
+{
+
+  @Test
+  public void testUndoRestoresMarks() {
+    for (int t = 0; t < 20; t++) {
+      // Without general position, so there are collinear points, too.
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(10, 20, false);
+      int n = points.size();
+      EdgeSet edges = new EdgeSet(new CrossingTable(points));
+
+      edges.markEdge(0, 1);
+      int initial = edges.state();
+      String before = snapshot(edges, n);
+
+      edges.markRule1(2, 3);
+      int nested = edges.state();
+      String between = snapshot(edges, n);
+
+      edges.markRule1(4, 5);
+      edges.markRule1(5, 4);
+      List<Integer> rem = new ArrayList<Integer>();
+      for (int i = 6; i < n; i++)
+        rem.add(i);
+      edges.markRule2(5, rem);
+      edges.markEdge(7, 8);
+
+      edges.undo(nested);
+      assertEquals(between, snapshot(edges, n));
+
+      edges.undo(initial);
+      assertEquals(before, snapshot(edges, n));
+      assertTrue(edges.isMarked(1, 0));
+    }
+  }
+
+  @Test
+  public void testCrossingTableMatchesLineSegments() {
+    for (int t = 0; t < 10; t++) {
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(12, 10, false);
+      int n = points.size();
+      CrossingTable table = new CrossingTable(points);
+
+      for (int i = 0; i < n; i++) {
+        for (int j = 0; j < n; j++) {
+          if (i == j) continue;
+
+          // Both directions of each edge have a row of their own.
+          long[] row = table.row(i, j);
+          LineSegment ls = new LineSegment(points.get(i), points.get(j));
+          for (int k = 0; k < n; k++) {
+            for (int l = k + 1; l < n; l++) {
+              int e = table.edge(k, l);
+              boolean crosses = (row[e >>> 6] & (1L << e)) != 0;
+              Point[] is = ls.intersect(
+                  new LineSegment(points.get(k), points.get(l)), true);
+
+              // Edges sharing an endpoint only cross if they overlap, see
+              // CrossingTable.computeRow().
+              boolean adjacent = k == i || k == j || l == i || l == j;
+              boolean expected =
+                  is != null && (is.length == 0 || !adjacent);
+              assertEquals("(" + i + ", " + j + ") x (" + k + ", " + l + ")",
+                  expected, crosses);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  @Test
+  public void shouldBeSimplePolygon() throws IllegalParameterizationException {
+    IncrementalConstructionAndBacktrackingFactory factory =
+        new IncrementalConstructionAndBacktrackingFactory();
+
+    for (int i = 0; i < 100; i++) {
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(3 + i % 10, 1000, true);
+      Map<Parameters, Object> params = new HashMap<Parameters, Object>();
+      params.put(Parameters.points, points);
+      PolygonStatistics stats = new PolygonStatistics();
+
+      PolygonGenerator generator = factory.createInstance(params, stats, null);
+      OrderedListPolygon polygon = (OrderedListPolygon) generator.generate();
+
+      assertEquals(points.size(), polygon.size());
+      assertEquals(new HashSet<Point>(points),
+          new HashSet<Point>(polygon.getPoints()));
+      assertTrue(i + ". try is not simple",
+          polygon.isSimple(IntersectionAlgorithm.NAIVE));
+    }
+  }
+
+  /**
+   * Marks and degrees of all points as a string.
+   */
+  private static String snapshot(EdgeSet edges, int n) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < n; i++) {
+      sb.append(edges.degree(i)).append(':');
+      for (int j = 0; j < n; j++)
+        sb.append(i == j ? '-' : edges.isMarked(i, j) ? '1' : '0');
+      sb.append(' ');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,95 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGenerator;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.other.PermuteAndRejectFactory;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.OrderedListPolygon.IntersectionAlgorithm;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.util.GeneratorUtils;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class PermuteAndRejectTest
+{
+
+  @Test
+  public void shouldBeSimplePolygon() throws IllegalParameterizationException {
+    PolygonGeneratorFactory factory = new PermuteAndRejectFactory();
+
+    for(int i = 0; i < 20; ++i){
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(3 + i % 6, 1000, true);
+
+      PolygonStatistics stats = new PolygonStatistics();
+      OrderedListPolygon polygon = generate(factory, points, stats);
+
+      assertEquals(new HashSet<Point>(points),
+          new HashSet<Point>(polygon.getPoints()));
+      assertEquals(points.size(), polygon.size());
+
+      assertTrue(i + ". try is not simple",
+          polygon.isSimple(IntersectionAlgorithm.NAIVE));
+      assertTrue(polygon.isClockwise() != 1);
+      assertTrue(stats.iterations >= 0);
+    }
+  }
+
+  @Test
+  public void shouldAcceptSimpleInput() throws IllegalParameterizationException {
+    List<Point> points = new ArrayList<Point>(Arrays.asList(
+        new Point(0, 0), new Point(10, 0), new Point(10, 10), new Point(5, 5),
+        new Point(0, 10)));
+
+    PolygonStatistics stats = new PolygonStatistics();
+    OrderedListPolygon polygon =
+        generate(new PermuteAndRejectFactory(), points, stats);
+
+    assertEquals(points, polygon.getPoints());
+    assertEquals(0, stats.iterations.intValue());
+  }
+
+  @Test
+  public void shouldRejectCrossingInput() throws IllegalParameterizationException {
+    // A bow tie, the first permutation is rejected.
+    List<Point> points = new ArrayList<Point>(Arrays.asList(
+        new Point(0, 0), new Point(10, 10), new Point(10, 0), new Point(0, 10)));
+
+    PolygonStatistics stats = new PolygonStatistics();
+    OrderedListPolygon polygon =
+        generate(new PermuteAndRejectFactory(), points, stats);
+
+    assertTrue(polygon.isSimple(IntersectionAlgorithm.NAIVE));
+    assertTrue(stats.iterations >= 1);
+  }
+
+  private static OrderedListPolygon generate(PolygonGeneratorFactory factory,
+      List<Point> points, PolygonStatistics stats)
+    throws IllegalParameterizationException {
+    HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+    params.put(Parameters.points, points);
+
+    PolygonGenerator gen = factory.createInstance(params, stats, null);
+    return (OrderedListPolygon) gen.generate();
+  }
+}
@@ -0,0 +1,46 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import polygonsSWP.util.RandomNumbers;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class RandomNumbersTest
+{
+  @Test
+  public void testSeed() {
+    RandomNumbers a = new RandomNumbers(42), b = new RandomNumbers(42);
+    for (int i = 0; i < 1000; i++)
+      assertEquals(a.nextLong(), b.nextLong());
+
+    assertFalse(new RandomNumbers(1).nextLong() == new RandomNumbers(2).nextLong());
+  }
+
+  @Test
+  public void testNextDoubles() {
+    RandomNumbers a = new RandomNumbers(1322691L), b = new RandomNumbers(1322691L);
+
+    double[] values = new double[1000];
+    a.nextDoubles(values, 1, 999);
+    assertEquals(0.0, values[0], 0);
+    assertEquals(0.0, values[999], 0);
+
+    for (int i = 1; i < 999; i++) {
+      assertEquals(b.nextDouble(), values[i], 0);
+      assertTrue(values[i] >= 0 && values[i] < 1);
+    }
+
+    // Both continue with the same state.
+    assertEquals(a.nextLong(), b.nextLong());
+  }
+}
@@ -15,6 +15,8 @@ import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
 import polygonsSWP.generators.heuristics.SpacePartitioningFactory;
 import polygonsSWP.geometry.OrderedListPolygon;
 import polygonsSWP.geometry.Point;
+import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
 
 /**
  * (c) 2011-2012
@@ -51,4 +53,35 @@ public class SpacePartitioningTest
       assertTrue(i + ". try is not simple", polygon.isSimple());
     }
   }
+
+  @Test
+  public void testParallelMatchesSequential()
+    throws IllegalParameterizationException {
+    List<Point> points =
+        GeneratorUtils.createRandomSetOfPointsInSquare(100000, 100000, false);
+
+    List<Point> sequential = generate(points, 1);
+    assertEquals(points.size(), sequential.size());
+    assertTrue(new OrderedListPolygon(sequential).isSimple());
+
+    assertEquals(sequential, generate(points, 2));
+    assertEquals(sequential, generate(points, 4));
+  }
+
+  private static List<Point> generate(List<Point> points, int threads)
+    throws IllegalParameterizationException {
+    Random previous = Random.bind(new Random(1322691L));
+    try {
+      HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+      params.put(Parameters.points, new ArrayList<Point>(points));
+      params.put(Parameters.threads, threads);
+
+      PolygonGenerator gen =
+          new SpacePartitioningFactory().createInstance(params, null, null);
+      return gen.generate().getPoints();
+    }
+    finally {
+      Random.bind(previous);
+    }
+  }
 }
@@ -10,6 +10,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -203,4 +204,76 @@ public class SteadyGrowthConvexHullTest {
     System.out.println("actual: " + hull.getPoints());
     assertArrayEquals(expected, actual);
   }
+
+  @Test
+  public void testBinarySearch(){
+    Random random = new Random(1322691L);
+
+    for(int run = 0; run < 300; ++run){
+      // integer coordinates produce many collinear points
+      int grid = run % 3 == 0 ? 1000000 : 30;
+
+      List<Point> points = new ArrayList<Point>();
+      points.add(new Point(0, 0));
+      points.add(new Point(grid, 1));
+      points.add(new Point(grid / 2, grid));
+      for(int i = 0; i < 200; ++i){
+        if(run % 3 == 2) {
+          double angle = random.nextDouble() * 2 * Math.PI;
+          points.add(new Point(grid + Math.round(grid * Math.cos(angle)),
+              grid + Math.round(grid * Math.sin(angle))));
+        }
+        else {
+          points.add(new Point(random.nextInt(grid), random.nextInt(grid)));
+        }
+      }
+
+      SteadyGrowthConvexHull sequential = new SteadyGrowthConvexHull(),
+                             binary = new SteadyGrowthConvexHull();
+      int minSize = SteadyGrowthConvexHull.binarySearchMinSize;
+      try {
+        for(Point point : points){
+          SteadyGrowthConvexHull.binarySearchMinSize = Integer.MAX_VALUE;
+          int expected = sequential.addPointReturnAndInsertIndex(point);
+          SteadyGrowthConvexHull.binarySearchMinSize = 3;
+          int actual = binary.addPointReturnAndInsertIndex(point);
+
+          assertEquals(expected, actual);
+          assertEquals(sequential.getPoints(), binary.getPoints());
+        }
+      }
+      finally {
+        SteadyGrowthConvexHull.binarySearchMinSize = minSize;
+      }
+    }
+  }
+
+  @Test
+  public void testUndo(){
+    Random random = new Random(1322691L);
+
+    for(int run = 0; run < 100; ++run){
+      SteadyGrowthConvexHull hull = new SteadyGrowthConvexHull();
+
+      for(int i = 0; i < 100; ++i){
+        List<Point> before = new ArrayList<Point>(hull.getPoints());
+
+        // rejected candidate
+        Point point = new Point(random.nextInt(1000), random.nextInt(1000));
+        hull.addPoint(point);
+        hull.undo();
+        assertEquals(before, hull.getPoints());
+
+        // a second undo has no effect
+        hull.undo();
+        assertEquals(before, hull.getPoints());
+
+        SteadyGrowthConvexHull copy = (SteadyGrowthConvexHull) hull.clone();
+        point = new Point(random.nextInt(1000), random.nextInt(1000));
+        int expected = copy.addPointReturnAndInsertIndex(point);
+        assertEquals(expected, hull.addPointReturnAndInsertIndex(point));
+        assertEquals(copy.getPoints(), hull.getPoints());
+      }
+    }
+  }
 }
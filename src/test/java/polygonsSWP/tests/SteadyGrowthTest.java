@@ -0,0 +1,57 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGenerator;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.heuristics.SteadyGrowthFactory;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.util.GeneratorUtils;
+import polygonsSWP.util.Random;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class SteadyGrowthTest
+{
+  @After
+  public void tearDown() {
+    Random.pseudoRandom(false, 0);
+  }
+
+  @Test
+  public void shouldBeSimplePolygon() throws IllegalParameterizationException {
+    Random.pseudoRandom(true, 1322691L);
+    PolygonGeneratorFactory factory = new SteadyGrowthFactory();
+
+    for(int i = 0; i < 20; ++i){
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(200, 1000, true);
+
+      HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+      params.put(Parameters.points, points);
+
+      PolygonGenerator gen = factory.createInstance(params, null, null);
+      OrderedListPolygon polygon = (OrderedListPolygon) gen.generate();
+
+      assertEquals(200, polygon.size());
+      assertTrue(polygon.getPoints().containsAll(points));
+      assertTrue(i + ". try is not simple", polygon.isSimple());
+    }
+  }
+}
@@ -0,0 +1,59 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGenerator;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.heuristics.TwoOptMovesFactory;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.OrderedListPolygon.IntersectionAlgorithm;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.util.GeneratorUtils;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class TwoOptMovesTest
+{
+
+  @Test
+  public void shouldBeSimplePolygon() throws IllegalParameterizationException {
+    PolygonGeneratorFactory factory = new TwoOptMovesFactory();
+
+    for(int i = 0; i < 20; ++i){
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(5 + 10 * i, 1000, true);
+
+      HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+      params.put(Parameters.points, points);
+
+      PolygonStatistics stats = new PolygonStatistics();
+      PolygonGenerator gen = factory.createInstance(params, stats, null);
+      OrderedListPolygon polygon = (OrderedListPolygon) gen.generate();
+
+      // 2-opt moves only reorder the given points.
+      assertEquals(new HashSet<Point>(points),
+          new HashSet<Point>(polygon.getPoints()));
+      assertEquals(points.size(), polygon.size());
+
+      assertTrue(i + ". try is not simple",
+          polygon.isSimple(IntersectionAlgorithm.NAIVE));
+      assertTrue(stats.iterations >= 0);
+    }
+  }
+}
@@ -0,0 +1,76 @@
+package polygonsSWP.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.HashMap;
+
+import org.junit.After;
+import org.junit.Test;
+
+import polygonsSWP.data.PolygonStatistics;
+import polygonsSWP.generators.IllegalParameterizationException;
+import polygonsSWP.generators.PolygonGeneratorFactory;
+import polygonsSWP.generators.PolygonGeneratorFactory.Parameters;
+import polygonsSWP.generators.heuristics.VelocityVirmaniFactory;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.util.Random;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class VelocityVirmaniTest
+{
+  @After
+  public void tearDown() {
+    Random.pseudoRandom(false, 0);
+  }
+
+  @Test
+  public void shouldBeSimplePolygon() throws IllegalParameterizationException {
+    for (int threads = 0; threads <= 1; threads++) {
+      PolygonStatistics stats = new PolygonStatistics();
+      OrderedListPolygon polygon = generate(1000, threads, stats);
+
+      assertEquals(1000, polygon.size());
+      assertTrue(polygon.isSimple());
+      assertTrue(stats.rejections > 0 && stats.rejections < 1000 * 50);
+    }
+  }
+
+  @Test
+  public void testBatchesIndependentOfThreads()
+    throws IllegalParameterizationException {
+    // 1000 points give batches large enough to be checked in parallel.
+    PolygonStatistics single = new PolygonStatistics();
+    PolygonStatistics parallel = new PolygonStatistics();
+
+    OrderedListPolygon a = generate(1000, 1, single);
+    OrderedListPolygon b = generate(1000, 4, parallel);
+
+    assertEquals(a.toString(), b.toString());
+    assertEquals(single.rejections, parallel.rejections);
+  }
+
+  private static OrderedListPolygon generate(int n, int threads,
+      PolygonStatistics stats) throws IllegalParameterizationException {
+    Random.pseudoRandom(true, 1322691L);
+
+    HashMap<Parameters, Object> params = new HashMap<Parameters, Object>();
+    params.put(Parameters.n, n);
+    params.put(Parameters.size, 1000);
+    params.put(Parameters.radius, 400);
+    params.put(Parameters.runs, 50);
+    params.put(Parameters.velocity, 20);
+    params.put(Parameters.threads, threads);
+
+    PolygonGeneratorFactory factory = new VelocityVirmaniFactory();
+    return (OrderedListPolygon) factory.createInstance(params, stats, null)
+        .generate();
+  }
+}
@@ -1,14 +1,22 @@
 package polygonsSWP.tests.geometry;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
+import polygonsSWP.geometry.Line;
+import polygonsSWP.geometry.LineSegment;
 import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.OrderedListPolygon.IntersectionAlgorithm;
 import polygonsSWP.geometry.Point;
+import polygonsSWP.geometry.Ray;
 import polygonsSWP.geometry.Triangle;
 
 /**
@@ -33,16 +41,21 @@ public class OrderedListPolygonTest
   
   @Test
   public void testIsSimple() {
+    for (IntersectionAlgorithm algorithm : IntersectionAlgorithm.values())
+      testIsSimple(algorithm);
+  }
+
+  private void testIsSimple(IntersectionAlgorithm algorithm) {
     // Simple polygon
     OrderedListPolygon p = new OrderedListPolygon();
     p.addPoint(new Point(0, 0));
     p.addPoint(new Point(10, 0));
     p.addPoint(new Point(0, 10));
-    assertTrue(p.isSimple());
+    assertTrue(p.isSimple(algorithm));
 
     // Complex polygon
     p.addPoint(new Point(10, 10));
-    assertFalse(p.isSimple());
+    assertFalse(p.isSimple(algorithm));
 
     // point a of edge ab lying on edge cd
     p = new OrderedListPolygon();
@@ -51,7 +64,7 @@ public class OrderedListPolygonTest
     p.addPoint(new Point(10, 10));
     p.addPoint(new Point(5, 0));
     p.addPoint(new Point(0, 10));
-    assertFalse(p.isSimple());
+    assertFalse(p.isSimple(algorithm));
 
     // edge ab lying on edge cd
     p = new OrderedListPolygon();
@@ -61,7 +74,79 @@ public class OrderedListPolygonTest
     p.addPoint(new Point(7, 0));
     p.addPoint(new Point(3, 0));
     p.addPoint(new Point(0, 10));
-    assertFalse(p.isSimple());
+    assertFalse(p.isSimple(algorithm));
+
+    // edges crossing in a vertex of the polygon
+    p = new OrderedListPolygon();
+    p.addPoint(new Point(0, 0));
+    p.addPoint(new Point(10, 10));
+    p.addPoint(new Point(10, 0));
+    p.addPoint(new Point(5, 5));
+    p.addPoint(new Point(0, 10));
+    assertFalse(p.isSimple(algorithm));
+
+    // vertical edges
+    p = new OrderedListPolygon();
+    p.addPoint(new Point(0, 0));
+    p.addPoint(new Point(10, 0));
+    p.addPoint(new Point(10, 10));
+    p.addPoint(new Point(5, 10));
+    p.addPoint(new Point(5, 5));
+    p.addPoint(new Point(0, 5));
+    assertTrue(p.isSimple(algorithm));
+  }
+
+  @Test
+  public void testFindIntersections() {
+    // The sweep line has to find the same intersections as the naive
+    // approach, on random points as well as on integer grids.
+    testFindIntersections(new Random(1322691L), 500, 100);
+  }
+
+  @Test
+  public void testFindIntersectionsLargeCoordinates() {
+    // Computed crossings are less precise in absolute terms for large
+    // coordinates, which must not make the sweep line miss any.
+    Random random = new Random(1322691L);
+    for (double scale : new double[] { 1E5, 1E6, 1E7, 1E9 })
+      testFindIntersections(random, 1000, scale);
+  }
+
+  private void testFindIntersections(Random random, int runs, double scale) {
+    for (int run = 0; run < runs; run++) {
+      boolean grid = run % 2 == 0;
+      int n = 4 + random.nextInt(30);
+
+      List<Point> points = new ArrayList<Point>();
+      while (points.size() < n) {
+        Point p = grid ?
+            new Point(random.nextInt(6), random.nextInt(6)) :
+            new Point(random.nextDouble() * scale, random.nextDouble() * scale);
+        if (!points.contains(p)) points.add(p);
+      }
+      OrderedListPolygon p = new OrderedListPolygon(points);
+
+      List<Integer[]> naive = p.findIntersections(IntersectionAlgorithm.NAIVE);
+      List<Integer[]> sweep =
+          p.findIntersections(IntersectionAlgorithm.SWEEP_LINE);
+
+      // Unlike the naive approach, the sweep line ignores collinear edges
+      // which do not overlap.
+      List<Integer[]> expected = new ArrayList<Integer[]>();
+      for (Integer[] isec : naive) {
+        int i = isec[0], j = isec[1];
+        LineSegment a = new LineSegment(points.get(i), points.get(i + 1));
+        LineSegment b =
+            new LineSegment(points.get(j), points.get((j + 1) % n));
+        Point[] isect = a.intersect(b);
+        if (isect.length != 0 || a.containsPoint(b._a) ||
+            a.containsPoint(b._b) || b.containsPoint(a._a)) expected.add(isec);
+      }
+
+      assertArrayEquals(expected.toArray(), sweep.toArray());
+      assertEquals(expected.isEmpty(),
+          p.isSimple(IntersectionAlgorithm.SWEEP_LINE));
+    }
   }
 
   @Test
@@ -127,4 +212,56 @@ public class OrderedListPolygonTest
     double area = l.get(0).getSurfaceArea() + l.get(1).getSurfaceArea();
     assertTrue(area == poly.getSurfaceArea());
   }
+
+  @Test
+  public void testEdgeIndex() {
+    Random random = new Random(1322691L);
+
+    for (int run = 0; run < 20; run++) {
+      List<Point> points = new ArrayList<Point>();
+      OrderedListPolygon indexed = new OrderedListPolygon(points);
+      indexed.setEdgeIndexed(true);
+      OrderedListPolygon naive = new OrderedListPolygon(points);
+
+      for (int i = 0; i < 60; i++) {
+        Point p = randomPoint(random, i < 3 ? 10 : 100);
+        indexed.addPoint(random.nextInt(points.size() + 1), p);
+
+        Point a = randomPoint(random, 100);
+        Point b = i > 0 ? points.get(random.nextInt(points.size())) : a;
+        assertSameIntersections(naive.intersect(new LineSegment(a, b)),
+            indexed.intersect(new LineSegment(a, b)));
+        assertSameIntersections(naive.intersect(new LineSegment(a, b), false),
+            indexed.intersect(new LineSegment(a, b), false));
+        assertSameIntersections(naive.intersect(new Ray(a, b)),
+            indexed.intersect(new Ray(a, b)));
+        assertSameIntersections(naive.intersect(new Line(a, b)),
+            indexed.intersect(new Line(a, b)));
+      }
+    }
+  }
+
+  private static Point randomPoint(Random random, int size) {
+    return new Point(random.nextInt(size), random.nextInt(size));
+  }
+
+  /**
+   * Edges coincident with the query are not compared, see
+   * OrderedListPolygon.setEdgeIndexed().
+   */
+  private static void assertSameIntersections(List<Point[]> expected,
+      List<Point[]> actual) {
+    expected = withoutCoincidentEdges(expected);
+    actual = withoutCoincidentEdges(actual);
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++)
+      assertArrayEquals(expected.get(i), actual.get(i));
+  }
+
+  private static List<Point[]> withoutCoincidentEdges(List<Point[]> isecs) {
+    List<Point[]> retval = new ArrayList<Point[]>();
+    for (Point[] isec : isecs)
+      if (isec[0] != null) retval.add(isec);
+    return retval;
+  }
 }
@@ -0,0 +1,100 @@
+package polygonsSWP.tests.geometry;
+
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import polygonsSWP.geometry.Line;
+import polygonsSWP.geometry.LineSegment;
+import polygonsSWP.geometry.OrderedListPolygon;
+import polygonsSWP.geometry.PackedPolygon;
+import polygonsSWP.geometry.Point;
+import polygonsSWP.geometry.Ray;
+import polygonsSWP.util.GeneratorUtils;
+
+/**
+ * (c) 2011-2012
+ * @author Steve Dierker <dierker.steve@fu-berlin.de>
+ * @author Marcel Ehrhardt <marehr@zedat.fu-berlin.de>
+ * @author Jannis Ihrig <jannis.ihrig@fu-berlin.de>
+ * @author Malte Rohde <malte.rohde@inf.fu-berlin.de>
+ * @author Sebastian Thobe <s.thobe@fu-berlin.de>
+ * @author Kadir Tugan <kadir.tugan@gmail.com>
+ */
+public class PackedPolygonTest
+{
+  @Test
+  public void testSameAsOrderedListPolygon() {
+    for (int i = 0; i < 50; i++) {
+      List<Point> points =
+          GeneratorUtils.createRandomSetOfPointsInSquare(3 + i, 100, false);
+      OrderedListPolygon list = new OrderedListPolygon(points);
+      PackedPolygon packed = PackedPolygon.valueOf(list);
+
+      assertEquals(list.size(), packed.size());
+      assertEquals(list, packed);
+      assertEquals(list.getSurfaceArea(), packed.getSurfaceArea(), 0);
+      assertEquals(list.getCircumference(), packed.getCircumference(), 0);
+      assertEquals(list.isClockwise(), packed.isClockwise());
+
+      for (int j = 0; j < 20; j++) {
+        Point a = points.get(j % points.size());
+        Point b = points.get((j * 7 + 1) % points.size());
+        Point c = new Point(j * 5, 100 - j * 3);
+
+        for (Point p : new Point[] { a, c, new LineSegment(a, c).getPointOnLineSegment(0.5) }) {
+          assertEquals(list.containsPoint(p, true), packed.containsPoint(p, true));
+          assertEquals(list.containsPoint(p, false), packed.containsPoint(p, false));
+        }
+
+        assertSameIntersections(list.intersect(new LineSegment(a, c)),
+            packed.intersect(new LineSegment(a, c)));
+        assertSameIntersections(list.intersect(new LineSegment(a, b), false),
+            packed.intersect(new LineSegment(a, b), false));
+        assertSameIntersections(list.intersect(new Ray(c, a)),
+            packed.intersect(new Ray(c, a)));
+        assertSameIntersections(list.intersect(new Line(a, c)),
+            packed.intersect(new Line(a, c)));
+      }
+    }
+  }
+
+  @Test
+  public void testConversion() {
+    PackedPolygon packed = new PackedPolygon();
+    packed.addPoint(0, 0);
+    packed.addPoint(10, 0);
+    packed.addPoint(10, 10);
+
+    // The view shares the coordinates in both directions.
+    OrderedListPolygon list = packed.toOrderedListPolygon();
+    assertSame(packed, PackedPolygon.valueOf(list));
+
+    list.addPoint(new Point(0, 10));
+    assertEquals(4, packed.size());
+    assertEquals(100.0, packed.getSurfaceArea(), 0);
+
+    list.reverse();
+    assertEquals(new Point(0, 10), packed.getPoint(0));
+    assertEquals(1, packed.isClockwise());
+
+    list.deletePoint(new Point(10, 0));
+    assertEquals(3, packed.size());
+    assertEquals(new Point(10, 10), packed.getPoint(1));
+
+    // Clones are independent.
+    PackedPolygon clone = packed.clone();
+    packed.set(0, 5, 5);
+    assertEquals(new Point(0, 10), clone.getPoint(0));
+    assertEquals(new Point(5, 5), list.getPoints().get(0));
+  }
+
+  private static void assertSameIntersections(List<Point[]> expected,
+      List<Point[]> actual) {
+    assertEquals(expected.size(), actual.size());
+    for (int i = 0; i < expected.size(); i++)
+      assertArrayEquals(expected.get(i), actual.get(i));
+  }
+}